@@ -0,0 +1,52 @@
+package fr.openclassrooms.rental.models;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.openclassrooms.rental.dto.RentalDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON d'une page de GET /rentals, avec un ObjectMapper configuré comme celui de Spring Boot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class RentalsResponseBenchmark {
+
+    // Taille de page par défaut et taille maximale (rental.pagination.*)
+    @Param({"50", "100"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private RentalsResponse rentalsResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<RentalDTO> rentals = new ArrayList<>(pageSize);
+        LocalDateTime date = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int id = 1; id <= pageSize; id++) {
+            rentals.add(new RentalDTO(id, "Appartement " + id, new BigDecimal("45.00"), new BigDecimal("850.00"),
+                    "http://localhost:3001/api/images/" + id + ".jpg",
+                    "Appartement lumineux de deux pièces, proche de la médiathèque et des commerces.",
+                    1, date, date));
+        }
+        rentalsResponse = new RentalsResponse();
+        rentalsResponse.setRentals(rentals);
+        rentalsResponse.setNext(String.valueOf(pageSize));
+    }
+
+    @Benchmark
+    public byte[] serialisation() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(rentalsResponse);
+    }
+}
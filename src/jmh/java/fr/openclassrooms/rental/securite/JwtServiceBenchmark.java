@@ -0,0 +1,92 @@
+package fr.openclassrooms.rental.securite;
+
+import fr.openclassrooms.rental.entite.Utilisateur;
+import fr.openclassrooms.rental.repository.UtilisateurRepository;
+import fr.openclassrooms.rental.service.UtilisateurService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.reflect.Proxy;
+import java.security.Key;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare la vérification historique d'un token (trois parsings, clé et parser reconstruits à chaque appel)
+ * avec la vérification en un seul parsing de {@link JwtService#verifyToken(String)} et avec le cache de
+ * {@link JwtFilter} ({@link JwtVerificationCache}). Mesure aussi la génération d'un token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private static final String ENCRIPTION_KEY = "608f36e92dc66d97d5933f0e6371493cb4fc05b1aa8f8de64014732472303a7c";
+
+    private JwtService jwtService;
+    private JwtVerificationCache jwtVerificationCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(1);
+        utilisateur.setName("Bench");
+        utilisateur.setEmail("bench@rental.fr");
+
+        // Dépôt en mémoire : seul findByEmail est sollicité par JwtService.generate
+        UtilisateurRepository repository = (UtilisateurRepository) Proxy.newProxyInstance(
+                UtilisateurRepository.class.getClassLoader(),
+                new Class<?>[]{UtilisateurRepository.class},
+                (proxy, method, args) -> "findByEmail".equals(method.getName()) ? Optional.of(utilisateur) : null);
+
+        this.jwtService = new JwtService(new UtilisateurService(repository, new BCryptPasswordEncoder()));
+        this.token = this.jwtService.generate(utilisateur.getEmail()).get("token");
+        this.jwtVerificationCache = new JwtVerificationCache(jwtService, true, 10_000, new SimpleMeterRegistry());
+        this.jwtVerificationCache.verify(token);
+    }
+
+    @Benchmark
+    public String generation() {
+        return jwtService.generate("bench@rental.fr").get("token");
+    }
+
+    @Benchmark
+    public boolean verificationHistorique() {
+        // Chemin d'origine de JwtFilter : extractUsername puis isTokenValidForUser (extractUsername + isTokenExpired)
+        String username = parse(token).getSubject();
+        return username.equals(parse(token).getSubject()) && !parse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean verificationUnique() {
+        return jwtService.verifyToken(token)
+                .map(claims -> "bench@rental.fr".equals(claims.getSubject()))
+                .orElse(false);
+    }
+
+    @Benchmark
+    public boolean verificationEnCache() {
+        return jwtVerificationCache.verify(token).isPresent();
+    }
+
+    private static Claims parse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(legacyKey())
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private static Key legacyKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(ENCRIPTION_KEY));
+    }
+}
@@ -0,0 +1,56 @@
+package fr.openclassrooms.rental.securite;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du hachage BCrypt selon le facteur de coût : encodage à l'inscription, vérification à la connexion.
+ * La vérification via {@link BoundedBCryptPasswordEncoder} mesure en plus le passage par son pool dédié.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    private static final String MOT_DE_PASSE = "motDePasse-Bench-2024";
+
+    @Param({"10", "12"})
+    private int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private BoundedBCryptPasswordEncoder boundedEncoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.boundedEncoder = new BoundedBCryptPasswordEncoder(strength, 1, 16, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        this.hash = encoder.encode(MOT_DE_PASSE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        boundedEncoder.destroy();
+    }
+
+    @Benchmark
+    public String encodage() {
+        return encoder.encode(MOT_DE_PASSE);
+    }
+
+    @Benchmark
+    public boolean verification() {
+        return encoder.matches(MOT_DE_PASSE, hash);
+    }
+
+    @Benchmark
+    public boolean verificationPoolBorne() {
+        return boundedEncoder.matches(MOT_DE_PASSE, hash);
+    }
+}
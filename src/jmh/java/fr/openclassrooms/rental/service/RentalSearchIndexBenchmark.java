@@ -0,0 +1,62 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.dto.RentalFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche dans {@link RentalSearchIndex} sur un catalogue généré de 100 000 locations.
+ * Le vocabulaire est volontairement réduit : chaque mot courant figure dans la majorité des locations,
+ * ce qui correspond au pire cas (listes de postings les plus longues).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class RentalSearchIndexBenchmark {
+
+    private static final String[] MOTS = ("appartement studio maison loft lumineux calme centre gare plage médiathèque "
+            + "balcon terrasse jardin parking cave ascenseur rénové spacieux vue mer montagne quartier commerces école "
+            + "métro tramway cuisine équipée meublé").split(" ");
+
+    @Param({"mediatheque", "appartement lumineux centre", "rue42"})
+    private String requete;
+
+    private RentalSearchIndex index;
+    private RentalFilter filtre;
+
+    @Setup
+    public void setUp() {
+        index = new RentalSearchIndex(null, null, true);
+        Random random = new Random(1);
+        for (int id = 1; id <= 100_000; id++) {
+            StringBuilder description = new StringBuilder();
+            for (int i = 0; i < 30; i++) {
+                description.append(MOTS[random.nextInt(MOTS.length)]).append(' ');
+                if (random.nextInt(3) == 0) {
+                    description.append("rue").append(random.nextInt(5000)).append(' ');
+                }
+            }
+            index.index(new RentalDTO(id, MOTS[random.nextInt(MOTS.length)] + " " + MOTS[random.nextInt(MOTS.length)],
+                    BigDecimal.valueOf(10 + random.nextInt(200)), BigDecimal.valueOf(300 + random.nextInt(3000)),
+                    null, description.toString(), 1, null, null));
+        }
+        filtre = new RentalFilter(null, BigDecimal.valueOf(1000), BigDecimal.valueOf(50));
+    }
+
+    @Benchmark
+    public List<Integer> recherche() {
+        return index.search(requete, RentalFilter.NONE, 50);
+    }
+
+    @Benchmark
+    public List<Integer> rechercheFiltree() {
+        return index.search(requete, filtre, 50);
+    }
+}
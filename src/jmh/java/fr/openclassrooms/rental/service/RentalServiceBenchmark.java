@@ -0,0 +1,65 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.entite.Rental;
+import fr.openclassrooms.rental.entite.Utilisateur;
+import fr.openclassrooms.rental.repository.RentalRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion d'une location en DTO et lecture d'une location présente dans {@link RentalCache}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class RentalServiceBenchmark {
+
+    private RentalService rentalService;
+    private Rental rental;
+
+    @Setup
+    public void setUp() {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(1);
+        rental = new Rental();
+        rental.setId(42);
+        rental.setName("Appartement lumineux");
+        rental.setSurface(new BigDecimal("45.00"));
+        rental.setPrice(new BigDecimal("850.00"));
+        rental.setPicture("http://localhost:3001/api/images/abc.jpg");
+        rental.setDescription("Proche de la médiathèque, deux chambres, balcon.");
+        rental.setUtilisateur(utilisateur);
+        rental.setCreated_at(LocalDateTime.now());
+        rental.setUpdated_at(LocalDateTime.now());
+
+        // Dépôt en mémoire : findDtoById n'est appelé qu'en cas d'absence du cache
+        RentalDTO rentalDTO = new RentalService(null, null, null, null).convertToDTO(rental);
+        RentalRepository repository = (RentalRepository) Proxy.newProxyInstance(
+                RentalRepository.class.getClassLoader(),
+                new Class<?>[]{RentalRepository.class},
+                (proxy, method, args) -> "findDtoById".equals(method.getName()) ? Optional.of(rentalDTO) : null);
+        RentalCache rentalCache = new RentalCache(true, 10_000, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        rentalService = new RentalService(repository, null, rentalCache, null);
+        rentalService.findRentalDtoById(rental.getId());
+    }
+
+    @Benchmark
+    public RentalDTO conversionEnDto() {
+        return rentalService.convertToDTO(rental);
+    }
+
+    @Benchmark
+    public Optional<RentalDTO> lectureEnCache() {
+        return rentalService.findRentalDtoById(rental.getId());
+    }
+}
@@ -0,0 +1,168 @@
+package fr.openclassrooms.rental.loadtest;
+
+import fr.openclassrooms.rental.entite.Message;
+import fr.openclassrooms.rental.entite.Rental;
+import fr.openclassrooms.rental.entite.Role;
+import fr.openclassrooms.rental.entite.Utilisateur;
+import fr.openclassrooms.rental.enumer.TypeDeRole;
+import fr.openclassrooms.rental.repository.MessageRepository;
+import fr.openclassrooms.rental.repository.RentalRepository;
+import fr.openclassrooms.rental.repository.UtilisateurRepository;
+import fr.openclassrooms.rental.service.ImageStorageService;
+import fr.openclassrooms.rental.service.RentalSearchIndex;
+import fr.openclassrooms.rental.service.RentalService;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeu de données du test de charge, écrit directement par les dépôts de l'application démarrée.
+ * Tous les utilisateurs partagent le même mot de passe, haché une seule fois.
+ */
+class DataSeeder {
+
+    static final String PASSWORD = "loadtest";
+    private static final int LOT = 500;
+    private static final String[] MOTS = ("appartement studio maison loft lumineux calme centre gare plage médiathèque "
+            + "balcon terrasse jardin parking cave ascenseur rénové spacieux vue mer montagne quartier commerces").split(" ");
+
+    private final ApplicationContext context;
+    private final Random random = new Random(42);
+
+    DataSeeder(ApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Données créées, référencées ensuite par les requêtes du test.
+     */
+    record SeedData(List<String> emails, List<Integer> userIds, List<Integer> rentalIds, List<String> images) {
+    }
+
+    SeedData seed(LoadTestOptions options) throws IOException {
+        List<String> images = seedImages(options.images());
+        List<Utilisateur> utilisateurs = seedUsers(options.users());
+        List<Rental> rentals = seedRentals(options.rentals(), utilisateurs, images);
+        List<Integer> rentalIds = rentals.stream().map(Rental::getId).toList();
+        seedMessages(options.messages(), utilisateurs, rentals);
+        return new SeedData(
+                utilisateurs.stream().map(Utilisateur::getEmail).toList(),
+                utilisateurs.stream().map(Utilisateur::getId).toList(),
+                rentalIds,
+                images);
+    }
+
+    private List<String> seedImages(int nombre) throws IOException {
+        ImageStorageService imageStorageService = context.getBean(ImageStorageService.class);
+        List<String> images = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            images.add(imageStorageService.store(Channels.newChannel(new ByteArrayInputStream(jpeg())), "jpg"));
+        }
+        return images;
+    }
+
+    // Photo factice de 800x600 au contenu aléatoire : taille comparable à une vraie photo compressée
+    private byte[] jpeg() throws IOException {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        int base = random.nextInt(0xFFFFFF);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, base + x * 31 + y * 17 + random.nextInt(64));
+            }
+        }
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", sortie);
+        return sortie.toByteArray();
+    }
+
+    private List<Utilisateur> seedUsers(int nombre) {
+        UtilisateurRepository utilisateurRepository = context.getBean(UtilisateurRepository.class);
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        List<Utilisateur> utilisateurs = new ArrayList<>(nombre);
+        List<Utilisateur> lot = new ArrayList<>(LOT);
+        for (int i = 1; i <= nombre; i++) {
+            Utilisateur utilisateur = new Utilisateur();
+            utilisateur.setName("Utilisateur " + i);
+            utilisateur.setEmail("user" + i + "@loadtest.fr");
+            utilisateur.setPassword(hash);
+            Role role = new Role();
+            role.setLibelle(TypeDeRole.UTILISATEUR);
+            utilisateur.setRole(role);
+            utilisateur.setCreated_at(LocalDateTime.now());
+            utilisateur.setUpdated_at(LocalDateTime.now());
+            lot.add(utilisateur);
+            if (lot.size() == LOT || i == nombre) {
+                utilisateurRepository.saveAll(lot).forEach(utilisateurs::add);
+                lot.clear();
+            }
+        }
+        return utilisateurs;
+    }
+
+    private List<Rental> seedRentals(int nombre, List<Utilisateur> utilisateurs, List<String> images) {
+        RentalRepository rentalRepository = context.getBean(RentalRepository.class);
+        RentalService rentalService = context.getBean(RentalService.class);
+        RentalSearchIndex rentalSearchIndex = context.getBean(RentalSearchIndex.class);
+        ImageStorageService imageStorageService = context.getBean(ImageStorageService.class);
+        List<Rental> rentals = new ArrayList<>(nombre);
+        List<Rental> lot = new ArrayList<>(LOT);
+        for (int i = 1; i <= nombre; i++) {
+            Rental rental = new Rental();
+            rental.setName(mot() + " " + mot());
+            rental.setSurface(BigDecimal.valueOf(10 + random.nextInt(200)));
+            rental.setPrice(BigDecimal.valueOf(300 + random.nextInt(3000)));
+            rental.setPicture(imageStorageService.urlOf(images.get(random.nextInt(images.size()))));
+            StringBuilder description = new StringBuilder();
+            for (int mot = 0; mot < 40; mot++) {
+                description.append(mot()).append(' ');
+            }
+            rental.setDescription(description.toString().trim());
+            rental.setUtilisateur(utilisateurs.get(random.nextInt(utilisateurs.size())));
+            rental.setCreated_at(LocalDateTime.now());
+            rental.setUpdated_at(LocalDateTime.now());
+            lot.add(rental);
+            if (lot.size() == LOT || i == nombre) {
+                // L'index de recherche est construit au démarrage, avant le jeu de données : il est complété ici
+                for (Rental saved : rentalRepository.saveAll(lot)) {
+                    rentals.add(saved);
+                    rentalSearchIndex.index(rentalService.convertToDTO(saved));
+                }
+                lot.clear();
+            }
+        }
+        return rentals;
+    }
+
+    private void seedMessages(int nombre, List<Utilisateur> utilisateurs, List<Rental> rentals) {
+        MessageRepository messageRepository = context.getBean(MessageRepository.class);
+        List<Message> lot = new ArrayList<>(LOT);
+        for (int i = 1; i <= nombre; i++) {
+            Message message = new Message();
+            message.setMessage("Bonjour, la location est-elle disponible ? (" + i + ")");
+            message.setUser_id(utilisateurs.get(random.nextInt(utilisateurs.size())).getId());
+            Rental rental = rentals.get(random.nextInt(rentals.size()));
+            message.setRental_id(rental.getId());
+            message.setOwner_id(rental.getUtilisateur().getId());
+            lot.add(message);
+            if (lot.size() == LOT || i == nombre) {
+                messageRepository.saveAll(lot);
+                lot.clear();
+            }
+        }
+    }
+
+    private String mot() {
+        return MOTS[random.nextInt(MOTS.length)];
+    }
+}
@@ -0,0 +1,179 @@
+package fr.openclassrooms.rental.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Génère la charge : chaque client virtuel (un thread virtuel) enchaîne les requêtes, tirées selon les poids
+ * du mix, en envoyant la suivante dès réception de la réponse précédente (modèle fermé).
+ * Les latences sont enregistrées en microsecondes dans un histogramme HDR par opération ;
+ * seules les requêtes commencées après la période de chauffe sont comptées.
+ */
+class LoadDriver {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final long LATENCE_MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final LoadTestOptions options;
+    private final DataSeeder.SeedData data;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Operation[] tirage;
+    private final Map<Operation, Histogram> latences = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> erreurs = new EnumMap<>(Operation.class);
+
+    LoadDriver(LoadTestOptions options, DataSeeder.SeedData data, String baseUrl) {
+        this.options = options;
+        this.data = data;
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        // Table de tirage : chaque opération y figure autant de fois que son poids
+        List<Operation> operations = new ArrayList<>();
+        options.mix().forEach((operation, poids) -> {
+            for (int i = 0; i < poids; i++) {
+                operations.add(operation);
+            }
+            latences.put(operation, new ConcurrentHistogram(LATENCE_MAX_MICROS, 3));
+            erreurs.put(operation, new LongAdder());
+        });
+        this.tirage = operations.toArray(Operation[]::new);
+    }
+
+    /**
+     * Résultat d'une opération sur la période mesurée.
+     */
+    record OperationResult(Operation operation, Histogram latences, long erreurs) {
+    }
+
+    List<OperationResult> run() throws InterruptedException, ExecutionException {
+        // Un compte par client virtuel, connecté avant la charge : ces connexions (BCrypt) ne sont pas mesurées
+        String[] tokens = new String[options.concurrency()];
+        try (ExecutorService connexions = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Optional<String>>> reponses = new ArrayList<>();
+            for (int i = 0; i < tokens.length; i++) {
+                String email = email(i);
+                reponses.add(connexions.submit(() -> login(email)));
+            }
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = reponses.get(i).get()
+                        .orElseThrow(() -> new IllegalStateException("Connexion impossible pour un compte du jeu de données"));
+            }
+        }
+        long debutMesure = System.nanoTime() + options.warmup().toNanos();
+        long fin = debutMesure + options.duration().toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < tokens.length; i++) {
+                String email = email(i);
+                String token = tokens[i];
+                clients.execute(() -> client(email, token, debutMesure, fin));
+            }
+        }
+        List<OperationResult> resultats = new ArrayList<>();
+        latences.forEach((operation, histogramme) ->
+                resultats.add(new OperationResult(operation, histogramme, erreurs.get(operation).sum())));
+        return resultats;
+    }
+
+    private String email(int client) {
+        return data.emails().get(client % data.emails().size());
+    }
+
+    private void client(String email, String token, long debutMesure, long fin) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long depart = System.nanoTime();
+            if (depart >= fin) {
+                return;
+            }
+            Operation operation = tirage[random.nextInt(tirage.length)];
+            boolean succes;
+            try {
+                succes = execute(operation, token, email, random);
+            } catch (IOException e) {
+                succes = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (depart >= debutMesure) {
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - depart);
+                latences.get(operation).recordValue(Math.min(micros, LATENCE_MAX_MICROS));
+                if (!succes) {
+                    erreurs.get(operation).increment();
+                }
+            }
+        }
+    }
+
+    private boolean execute(Operation operation, String token, String email, ThreadLocalRandom random)
+            throws IOException, InterruptedException {
+        return switch (operation) {
+            case LOGIN -> login(email).isPresent();
+            case RENTALS -> {
+                // Page de taille par défaut à partir d'un curseur aléatoire
+                int curseur = data.rentalIds().get(random.nextInt(data.rentalIds().size())) - 1;
+                yield get("/rentals?cursor=" + curseur, token);
+            }
+            case RENTAL -> get("/rentals/" + data.rentalIds().get(random.nextInt(data.rentalIds().size())), token);
+            case MESSAGES -> {
+                String corps = "{\"message\":\"Toujours disponible ?\",\"user_id\":"
+                        + data.userIds().get(random.nextInt(data.userIds().size()))
+                        + ",\"rental_id\":" + data.rentalIds().get(random.nextInt(data.rentalIds().size())) + "}";
+                yield send(request("/messages", token)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(corps)).build());
+            }
+            case IMAGES -> get("/images/" + data.images().get(random.nextInt(data.images().size())), token);
+        };
+    }
+
+    private Optional<String> login(String email) throws IOException, InterruptedException {
+        String corps = "{\"email\":\"" + email + "\",\"password\":\"" + DataSeeder.PASSWORD + "\"}";
+        HttpResponse<String> reponse = client.send(request("/auth/login", null)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(corps)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(reponse.body());
+        return reponse.statusCode() == 200 && matcher.find() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    private boolean get(String chemin, String token) throws IOException, InterruptedException {
+        return send(request(chemin, token).GET().build());
+    }
+
+    // Le corps est lu en entier puis ignoré : la sérialisation et l'envoi font partie de la mesure
+    private boolean send(HttpRequest request) throws IOException, InterruptedException {
+        int statut = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        return statut >= 200 && statut < 400;
+    }
+
+    private HttpRequest.Builder request(String chemin, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + chemin))
+                .timeout(Duration.ofSeconds(30));
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+}
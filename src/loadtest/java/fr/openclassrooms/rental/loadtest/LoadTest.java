@@ -0,0 +1,94 @@
+package fr.openclassrooms.rental.loadtest;
+
+import fr.openclassrooms.rental.RentalApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Test de charge de bout en bout : démarre RentalApplication sur une base H2 embarquée (profil Spring "embedded"),
+ * crée un jeu de données, joue un mix de requêtes HTTP avec une concurrence donnée, puis affiche le débit et les
+ * percentiles de latence de chaque opération. Les distributions complètes sont écrites dans le répertoire --output
+ * (format .hgrm de HdrHistogram) pour comparer deux exécutions.
+ * Le client et le serveur partagent la machine : les résultats servent à comparer des configurations entre elles.
+ * <pre>
+ * mvn -Ploadtest compile exec:exec -Dloadtest.args="--concurrency=128 --duration=PT60S --server-threads=platform"
+ * </pre>
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // Lu par devtools avant le chargement des fichiers de configuration
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RentalApplication.class)
+                .profiles("embedded")
+                .properties("spring.threads.virtual.enabled=" + options.virtualThreads())
+                .run(options.applicationArgs().toArray(String[]::new))) {
+
+            long debut = System.nanoTime();
+            DataSeeder.SeedData data = new DataSeeder(context).seed(options);
+            System.out.printf(Locale.ROOT, "Jeu de données : %d utilisateurs, %d locations, %d messages, %d images (%d ms)%n",
+                    options.users(), options.rentals(), options.messages(), options.images(),
+                    (System.nanoTime() - debut) / 1_000_000);
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+            String baseUrl = "http://localhost:" + port + contextPath;
+            System.out.printf(Locale.ROOT, "Charge : %d clients, chauffe %s, mesure %s, threads serveur %s, %d processeurs%n",
+                    options.concurrency(), options.warmup(), options.duration(),
+                    options.virtualThreads() ? "virtuels" : "plateforme", Runtime.getRuntime().availableProcessors());
+
+            List<LoadDriver.OperationResult> resultats = new LoadDriver(options, data, baseUrl).run();
+            report(options, resultats, System.out);
+            write(options, resultats);
+        }
+    }
+
+    private static void report(LoadTestOptions options, List<LoadDriver.OperationResult> resultats, PrintStream out) {
+        double secondes = options.duration().toMillis() / 1000.0;
+        Histogram total = new Histogram(3);
+        long erreursTotales = 0;
+        out.printf(Locale.ROOT, "%n%-20s %10s %10s %8s %9s %9s %9s %9s %9s%n",
+                "Opération", "Requêtes", "Req/s", "Erreurs", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (LoadDriver.OperationResult resultat : resultats) {
+            line(out, resultat.operation().label(), resultat.latences(), resultat.erreurs(), secondes);
+            total.add(resultat.latences());
+            erreursTotales += resultat.erreurs();
+        }
+        line(out, "Total", total, erreursTotales, secondes);
+    }
+
+    private static void line(PrintStream out, String libelle, Histogram latences, long erreurs, double secondes) {
+        out.printf(Locale.ROOT, "%-20s %10d %10.1f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                libelle, latences.getTotalCount(), latences.getTotalCount() / secondes, erreurs,
+                millis(latences, 50), millis(latences, 90), millis(latences, 99), millis(latences, 99.9),
+                latences.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram latences, double percentile) {
+        return latences.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    // Une distribution par opération (valeurs en millisecondes), lisible par les outils HdrHistogram
+    private static void write(LoadTestOptions options, List<LoadDriver.OperationResult> resultats) throws IOException {
+        Path repertoire = Path.of(options.output());
+        Files.createDirectories(repertoire);
+        for (LoadDriver.OperationResult resultat : resultats) {
+            Path fichier = repertoire.resolve(resultat.operation().name().toLowerCase(Locale.ROOT) + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(fichier))) {
+                resultat.latences().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("\nDistributions écrites dans " + repertoire.toAbsolutePath());
+    }
+}
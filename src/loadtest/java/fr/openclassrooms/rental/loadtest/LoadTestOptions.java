@@ -0,0 +1,79 @@
+package fr.openclassrooms.rental.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Paramètres du test de charge, lus depuis la ligne de commande (--cle=valeur).
+ * Les arguments inconnus du harnais (--spring.*, --rental.*, ...) sont transmis à l'application.
+ */
+record LoadTestOptions(int users, int rentals, int messages, int images, int concurrency,
+                       Duration warmup, Duration duration, boolean virtualThreads,
+                       Map<Operation, Integer> mix, String output, List<String> applicationArgs) {
+
+    static final String DEFAULT_MIX = "login:2,rentals:25,rental:40,messages:20,images:13";
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int egal = arg.indexOf('=');
+            String cle = arg.startsWith("--") && egal > 2 ? arg.substring(2, egal) : null;
+            if (cle != null && isOption(cle)) {
+                options.put(cle, arg.substring(egal + 1));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        String threads = options.getOrDefault("server-threads", "virtual").toLowerCase(Locale.ROOT);
+        if (!threads.equals("virtual") && !threads.equals("platform")) {
+            throw new IllegalArgumentException("--server-threads : virtual ou platform attendu, reçu " + threads);
+        }
+        LoadTestOptions loadTestOptions = new LoadTestOptions(
+                Integer.parseInt(options.getOrDefault("users", "100")),
+                Integer.parseInt(options.getOrDefault("rentals", "1000")),
+                Integer.parseInt(options.getOrDefault("messages", "5000")),
+                Integer.parseInt(options.getOrDefault("images", "20")),
+                Integer.parseInt(options.getOrDefault("concurrency", "64")),
+                Duration.parse(options.getOrDefault("warmup", "PT10S")),
+                Duration.parse(options.getOrDefault("duration", "PT30S")),
+                threads.equals("virtual"),
+                parseMix(options.getOrDefault("mix", DEFAULT_MIX)),
+                options.getOrDefault("output", "target/loadtest"),
+                applicationArgs);
+        if (loadTestOptions.users() < 1 || loadTestOptions.rentals() < 1 || loadTestOptions.images() < 1
+                || loadTestOptions.concurrency() < 1) {
+            throw new IllegalArgumentException("--users, --rentals, --images et --concurrency doivent valoir au moins 1");
+        }
+        return loadTestOptions;
+    }
+
+    private static boolean isOption(String cle) {
+        return switch (cle) {
+            case "users", "rentals", "messages", "images", "concurrency", "warmup", "duration",
+                 "server-threads", "mix", "output" -> true;
+            default -> false;
+        };
+    }
+
+    // "login:2,rental:40" : poids relatifs de chaque opération, les opérations absentes ne sont pas jouées
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> poids = new EnumMap<>(Operation.class);
+        for (String element : mix.split(",")) {
+            String[] parties = element.trim().split(":");
+            int valeur = Integer.parseInt(parties[1].trim());
+            if (valeur > 0) {
+                poids.put(Operation.fromKey(parties[0].trim()), valeur);
+            }
+        }
+        if (poids.isEmpty()) {
+            throw new IllegalArgumentException("--mix : aucune opération de poids positif");
+        }
+        return poids;
+    }
+}
@@ -0,0 +1,33 @@
+package fr.openclassrooms.rental.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Opérations jouées par le test de charge, désignées dans --mix par leur clé.
+ */
+enum Operation {
+    LOGIN("login", "POST /auth/login"),
+    RENTALS("rentals", "GET /rentals"),
+    RENTAL("rental", "GET /rentals/{id}"),
+    MESSAGES("messages", "POST /messages"),
+    IMAGES("images", "GET /images/{nom}");
+
+    private final String key;
+    private final String label;
+
+    Operation(String key, String label) {
+        this.key = key;
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    static Operation fromKey(String key) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Opération inconnue : " + key));
+    }
+}
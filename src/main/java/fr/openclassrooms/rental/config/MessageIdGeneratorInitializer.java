@@ -0,0 +1,57 @@
+package fr.openclassrooms.rental.config;
+
+import fr.openclassrooms.rental.entite.Message;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+
+/**
+ * Aligne le générateur d'ids des messages (table message_seq sous MySQL) sur les ids existants.
+ * Les messages enregistrés avant le passage d'IDENTITY à une séquence ont des ids auto-incrémentés :
+ * la table message_seq créée par Hibernate repart de 1 et produirait des doublons.
+ * Exécuté au démarrage, une fois le schéma mis à jour et avant l'ouverture du serveur HTTP.
+ */
+@Component
+public class MessageIdGeneratorInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageIdGeneratorInitializer.class);
+    private static final String TABLE = "message_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // La dépendance à l'EntityManagerFactory garantit que le schéma (ddl-auto) est déjà à jour
+    public MessageIdGeneratorInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Boolean table = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet tables = connection.getMetaData()
+                    .getTables(connection.getCatalog(), null, TABLE, new String[]{"TABLE"})) {
+                return tables.next();
+            }
+        });
+        // Base avec de vraies séquences : créée avec la séquence, il n'y a rien à aligner
+        if (!Boolean.TRUE.equals(table)) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM message", Long.class);
+        // Optimiseur pooled : la valeur lue est la borne haute du bloc réservé, qui commence ALLOCATION - 1 plus bas
+        long prochaineValeur = maxId + Message.ID_ALLOCATION_SIZE;
+        int modifiees = jdbcTemplate.update("UPDATE " + TABLE + " SET next_val = ? WHERE next_val < ?",
+                prochaineValeur, prochaineValeur);
+        if (modifiees == 0 && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE, Long.class) == 0) {
+            modifiees = jdbcTemplate.update("INSERT INTO " + TABLE + " (next_val) VALUES (?)", prochaineValeur);
+        }
+        if (modifiees > 0) {
+            log.info("Générateur d'ids des messages aligné sur l'id maximal existant ({})", maxId);
+        }
+    }
+}
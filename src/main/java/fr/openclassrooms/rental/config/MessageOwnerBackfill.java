@@ -0,0 +1,38 @@
+package fr.openclassrooms.rental.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renseigne le propriétaire (owner_id) des messages enregistrés avant sa recopie à l'envoi.
+ * Sans lui, ces messages n'apparaîtraient plus dans la boîte de réception ni dans la reprise du flux SSE.
+ * Exécuté au démarrage, une fois le schéma mis à jour et avant l'ouverture du serveur HTTP ;
+ * une fois la reprise faite, seule la lecture des messages sans propriétaire (index owner_id) est refaite.
+ */
+@Component
+public class MessageOwnerBackfill implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageOwnerBackfill.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // La dépendance à l'EntityManagerFactory garantit que le schéma (ddl-auto) est déjà à jour
+    public MessageOwnerBackfill(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Les messages d'une location supprimée n'ont pas de propriétaire : ils sont laissés de côté
+        int modifies = jdbcTemplate.update("UPDATE message SET owner_id = "
+                + "(SELECT r.owner_id FROM rentals r WHERE r.id = message.rental_id) "
+                + "WHERE owner_id IS NULL AND rental_id IN (SELECT r.id FROM rentals r WHERE r.owner_id IS NOT NULL)");
+        if (modifies > 0) {
+            log.info("Propriétaire renseigné sur {} messages existants", modifies);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package fr.openclassrooms.rental.config;
+
+import fr.openclassrooms.rental.diagnostic.VirtualThreadPinningMonitor;
+import fr.openclassrooms.rental.securite.LoginThrottle;
+import fr.openclassrooms.rental.service.ChunkedUploadService;
+import fr.openclassrooms.rental.service.MessageNotificationHub;
+import fr.openclassrooms.rental.service.RentalSearchIndex;
+import fr.openclassrooms.rental.service.ThumbnailService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publication dans le registre de métriques des compteurs internes déjà tenus par les composants
+ * (files, index, abonnés SSE, limitation des connexions).
+ * Les valeurs sont lues à la collecte (/actuator/prometheus) : rien n'est ajouté au chemin des requêtes.
+ * Les durées (filtre JWT, BCrypt, services), les caches et l'écriture différée des messages sont mesurés
+ * dans les composants eux-mêmes ; la latence des endpoints, des méthodes des dépôts et le pool Hikari
+ * sont instrumentés par Spring Boot.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder messageNotificationMetrics(MessageNotificationHub hub) {
+        return registry -> {
+            Gauge.builder("rental.messages.sse.subscribers", hub, MessageNotificationHub::getSubscriberCount)
+                    .register(registry);
+            FunctionCounter.builder("rental.messages.sse.published", hub, MessageNotificationHub::getPublishedMessages)
+                    .register(registry);
+            FunctionCounter.builder("rental.messages.sse.evicted", hub, MessageNotificationHub::getEvictedSubscribers)
+                    .description("Abonnés déconnectés faute de vider leur tampon")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder rentalSearchMetrics(RentalSearchIndex index) {
+        return registry -> {
+            Gauge.builder("rental.search.rentals", index, RentalSearchIndex::getIndexedRentals).register(registry);
+            Gauge.builder("rental.search.terms", index, RentalSearchIndex::getTermCount).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder uploadMetrics(ThumbnailService thumbnailService, ChunkedUploadService chunkedUploadService) {
+        return registry -> {
+            Gauge.builder("rental.thumbnails.queue", thumbnailService, ThumbnailService::getQueueSize)
+                    .register(registry);
+            Gauge.builder("rental.upload.chunked.sessions", chunkedUploadService, ChunkedUploadService::getActiveSessions)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loginThrottleMetrics(LoginThrottle loginThrottle) {
+        return registry -> {
+            FunctionCounter.builder("rental.login.throttle.rejected", loginThrottle, LoginThrottle::getRejectedByEmail)
+                    .tag("key", "email").register(registry);
+            FunctionCounter.builder("rental.login.throttle.rejected", loginThrottle, LoginThrottle::getRejectedByAddress)
+                    .tag("key", "address").register(registry);
+            Gauge.builder("rental.login.throttle.keys", loginThrottle, LoginThrottle::getTrackedKeys)
+                    .register(registry);
+        };
+    }
+
+    // Le moniteur n'existe que si rental.threads.pinning-monitor.enabled=true
+    @Bean
+    public MeterBinder pinningMetrics(ObjectProvider<VirtualThreadPinningMonitor> monitor) {
+        return registry -> monitor.ifAvailable(pinning ->
+                FunctionCounter.builder("rental.threads.pinned", pinning, VirtualThreadPinningMonitor::getPinnedEvents)
+                        .description("Threads virtuels épinglés au-delà du seuil")
+                        .register(registry));
+    }
+}
@@ -0,0 +1,168 @@
+package fr.openclassrooms.rental.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Conversion des colonnes price et surface de la table rentals, autrefois textuelles, en DECIMAL(12,2).
+ * ddl-auto=update ne modifie pas le type d'une colonne existante : les valeurs sont d'abord normalisées
+ * ("1 200 €" devient 1200.00, une valeur illisible devient NULL), puis la colonne est convertie.
+ * Exécuté à la création du composant, une fois le schéma mis à jour ; sans effet si les colonnes sont déjà numériques.
+ * Les composants qui lisent price ou surface au démarrage (RentalSearchIndex) en dépendent par @DependsOn.
+ */
+@Component
+public class RentalNumericColumnsMigration implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RentalNumericColumnsMigration.class);
+    private static final String TABLE = "rentals";
+    private static final List<String> COLONNES = List.of("price", "surface");
+    private static final Set<Integer> TYPES_TEXTE = Set.of(Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR,
+            Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR, Types.CLOB);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // La dépendance à l'EntityManagerFactory garantit que le schéma (ddl-auto) est déjà à jour
+    public RentalNumericColumnsMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (String colonne : COLONNES) {
+            if (isTextColumn(colonne)) {
+                migrate(colonne);
+            }
+        }
+    }
+
+    private boolean isTextColumn(String colonne) {
+        Boolean texte = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet colonnes = connection.getMetaData()
+                    .getColumns(connection.getCatalog(), null, TABLE, colonne)) {
+                return colonnes.next() && TYPES_TEXTE.contains(colonnes.getInt("DATA_TYPE"));
+            }
+        });
+        return Boolean.TRUE.equals(texte);
+    }
+
+    private void migrate(String colonne) {
+        List<Object[]> corrections = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, " + colonne + " FROM " + TABLE + " WHERE " + colonne + " IS NOT NULL", ligne -> {
+            int id = ligne.getInt(1);
+            String valeur = ligne.getString(2);
+            BigDecimal nombre = parse(valeur);
+            if (nombre == null) {
+                log.warn("Location {} : {} illisible ('{}'), remplacé par NULL", id, colonne, valeur);
+            } else if (isAmbiguous(valeur)) {
+                log.warn("Location {} : {} ambigu ('{}'), lu comme {} (séparateur de milliers supposé)",
+                        id, colonne, valeur, nombre.toPlainString());
+            }
+            String normalisee = nombre == null ? null : nombre.toPlainString();
+            if (!valeur.equals(normalisee)) {
+                corrections.add(new Object[]{normalisee, id});
+            }
+        });
+        if (!corrections.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + TABLE + " SET " + colonne + " = ? WHERE id = ?", corrections);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " MODIFY " + colonne + " DECIMAL(12,2) NULL");
+        log.info("Colonne {}.{} convertie en DECIMAL(12,2) ({} valeurs normalisées)", TABLE, colonne, corrections.size());
+    }
+
+    /**
+     * Lecture tolérante d'un nombre saisi librement : espaces, unités (m2) et symboles monétaires ignorés,
+     * virgule ou point décimal ("1 200,50 €", "1.200,50" et "1,200.50" valent 1200.50).
+     * Quand les deux séparateurs sont présents, le dernier est le séparateur décimal.
+     * Un séparateur unique suivi d'exactement trois chiffres est un séparateur de milliers ("1.200" vaut 1200),
+     * voir {@link #isAmbiguous(String)}.
+     * @return le nombre arrondi à deux décimales, ou null s'il est illisible.
+     */
+    static BigDecimal parse(String valeur) {
+        String nombre = normalize(chiffres(valeur));
+        if (nombre == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(nombre).setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indique si la lecture repose sur la supposition d'un séparateur de milliers ("1.200" : 1200 ou 1,2 ?).
+     * La valeur est alors journalisée lors de la conversion.
+     */
+    static boolean isAmbiguous(String valeur) {
+        String chiffres = chiffres(valeur);
+        char separateur = chiffres.indexOf('.') >= 0 ? '.' : ',';
+        return chiffres.indexOf('.') < 0 != chiffres.indexOf(',') < 0 && isThousandsSeparator(chiffres, separateur);
+    }
+
+    // L'unité m2 est retirée avant les autres caractères, sinon son chiffre serait gardé
+    private static String chiffres(String valeur) {
+        return valeur.replaceAll("(?i)m[2²]", "").replaceAll("[^0-9,.-]", "");
+    }
+
+    // Forme lisible par BigDecimal (milliers retirés, point décimal), ou null si les séparateurs sont incohérents
+    private static String normalize(String chiffres) {
+        if (chiffres.isEmpty()) {
+            return null;
+        }
+        int dernierPoint = chiffres.lastIndexOf('.');
+        int derniereVirgule = chiffres.lastIndexOf(',');
+        if (dernierPoint < 0 && derniereVirgule < 0) {
+            return chiffres;
+        }
+        Character decimal;
+        Character milliers;
+        if (dernierPoint >= 0 && derniereVirgule >= 0) {
+            decimal = dernierPoint > derniereVirgule ? '.' : ',';
+            milliers = decimal == '.' ? ',' : '.';
+            if (chiffres.indexOf(decimal) != chiffres.lastIndexOf(decimal)) {
+                return null;
+            }
+        } else {
+            char separateur = dernierPoint >= 0 ? '.' : ',';
+            boolean plusieurs = chiffres.indexOf(separateur) != chiffres.lastIndexOf(separateur);
+            decimal = plusieurs || isThousandsSeparator(chiffres, separateur) ? null : separateur;
+            milliers = decimal == null ? separateur : null;
+        }
+        int finEntier = decimal == null ? chiffres.length() : chiffres.indexOf(decimal);
+        String entier = chiffres.substring(0, finEntier);
+        String decimales = decimal == null ? "" : "." + chiffres.substring(finEntier + 1);
+        if (milliers != null && entier.indexOf(milliers) >= 0) {
+            // Groupes de milliers : 1 à 3 chiffres en tête, puis exactement 3
+            if (!entier.matches("-?\\d{1,3}(" + Pattern.quote(milliers.toString()) + "\\d{3})+")) {
+                return null;
+            }
+            entier = entier.replace(milliers.toString(), "");
+        }
+        return entier + decimales;
+    }
+
+    // Séparateur unique suivi d'exactement trois chiffres, après une partie entière non nulle
+    private static boolean isThousandsSeparator(String chiffres, char separateur) {
+        int position = chiffres.indexOf(separateur);
+        if (position < 0 || position != chiffres.lastIndexOf(separateur)) {
+            return false;
+        }
+        String entier = chiffres.substring(0, position).replace("-", "");
+        String suite = chiffres.substring(position + 1);
+        return suite.matches("\\d{3}") && !entier.isEmpty() && !entier.matches("0+");
+    }
+}
@@ -1,37 +1,160 @@
 package fr.openclassrooms.rental.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import fr.openclassrooms.rental.service.ImageStorageService;
+import fr.openclassrooms.rental.service.ThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 public class ImageController {
 
+    // Attributs de requête Tomcat permettant de déléguer l'envoi du fichier au noyau (sendfile)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // En dessous de cette taille, une écriture directe coûte moins cher que sendfile (même seuil que Tomcat)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    // Une image adressée par contenu ne change jamais : elle peut être gardée un an par les navigateurs
+    private static final String CACHE_IMMUABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDATION = "no-cache";
+
+    private final ImageStorageService imageStorageService;
+    private final ThumbnailService thumbnailService;
+
+    public ImageController(ImageStorageService imageStorageService, ThumbnailService thumbnailService) {
+        this.imageStorageService = imageStorageService;
+        this.thumbnailService = thumbnailService;
+    }
+
     @GetMapping("/images/{filename}")
-    public ResponseEntity<Resource> serveImage(@PathVariable String filename) {
-        try {
-            Path imagePath = Paths.get("src/upload/").resolve(filename).normalize();
-            Resource resource = new UrlResource(imagePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .body(resource);
+    public void serveImage(@PathVariable String filename,
+                           @RequestParam(value = "size", required = false) Integer size,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Les noms adressés par contenu sont rangés par sous-répertoires, les anciens noms à la racine
+        Optional<Path> imagePath = imageStorageService.resolve(filename);
+        if (imagePath.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Path path = imagePath.get();
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        boolean immuable = imageStorageService.isContentAddressed(filename);
+        // L'empreinte du contenu est un ETag fort naturel
+        String etag = immuable ? "\"" + filename.substring(0, filename.indexOf('.')) + "\"" : null;
+
+        // Miniature demandée : servie si elle est déjà générée, sinon l'original est servi sans cache longue durée
+        if (size != null && immuable && thumbnailService.supports(size)) {
+            Optional<Path> miniature = thumbnailService.findThumbnail(filename, size);
+            if (miniature.isPresent()) {
+                path = miniature.get();
+                etag = "\"" + filename.substring(0, filename.indexOf('.')) + "-w" + size + "\"";
             } else {
-                return ResponseEntity.notFound().build();
+                immuable = false;
+            }
+        }
+
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        if (!immuable) {
+            // Taille et date de modification pour les fichiers susceptibles de changer
+            etag = "\"" + length + "-" + lastModified + "\"";
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immuable ? CACHE_IMMUABLE : CACHE_REVALIDATION);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + path.getFileName() + "\"");
+
+        // Requête partielle : une seule plage est servie, plusieurs plages donnent l'image entière
+        long start = 0;
+        long count = length;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
             }
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest().build();
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    count = range.getRangeEnd(length) - start + 1;
+                } catch (IllegalArgumentException e) {
+                    count = 0;
+                }
+                if (start >= length || count <= 0) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + count - 1) + "/" + length);
+            }
+        }
+
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
         }
+        send(path, start, count, request, response);
     }
-}
 
+    /**
+     * Envoie une portion du fichier sans la recopier en mémoire : par sendfile lorsque le connecteur
+     * le permet, sinon par FileChannel.transferTo vers la sortie de la réponse.
+     */
+    private void send(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel fichier = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel sortie = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long restant = count;
+            while (restant > 0) {
+                long envoye = fichier.transferTo(position, restant, sortie);
+                if (envoye <= 0) {
+                    break;
+                }
+                position += envoye;
+                restant -= envoye;
+            }
+        }
+    }
+}
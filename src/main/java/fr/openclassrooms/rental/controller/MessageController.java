@@ -1,40 +1,168 @@
 package fr.openclassrooms.rental.controller;
 
+import fr.openclassrooms.rental.dto.MessageDTO;
 import fr.openclassrooms.rental.entite.Message;
+import fr.openclassrooms.rental.exception.MessageQueueFullException;
 import fr.openclassrooms.rental.models.MessageResponse;
+import fr.openclassrooms.rental.models.MessagesResponse;
+import fr.openclassrooms.rental.securite.JwtPrincipal;
+import fr.openclassrooms.rental.service.MessageNotificationHub;
 import fr.openclassrooms.rental.service.MessageService;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 @Slf4j
-@AllArgsConstructor
 @RestController
 @RequestMapping(path = "/messages")
 public class MessageController {
     MessageService messageService;
+    private final MessageNotificationHub messageNotificationHub;
     private static final Logger log = LoggerFactory.getLogger(MessageController.class);
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public MessageController(MessageService messageService, MessageNotificationHub messageNotificationHub,
+                             @Value("${rental.pagination.default-page-size:50}") int defaultPageSize,
+                             @Value("${rental.pagination.max-page-size:100}") int maxPageSize) {
+        this.messageService = messageService;
+        this.messageNotificationHub = messageNotificationHub;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
 
     @PostMapping
     public ResponseEntity<MessageResponse> createMessage(@RequestBody Message message) {
         try {
             log.info("Envoie de message");
             this.messageService.envoyerMessage(message);
-            System.out.println(message);
             MessageResponse messageResponse = new MessageResponse();
             messageResponse.setMessage("Message send with success");
             return ResponseEntity.status(HttpStatus.CREATED).body(messageResponse);
+        } catch (MessageQueueFullException e) {
+            // File d'écriture pleine : ce n'est pas une erreur du client
+            throw e;
         } catch (Exception e) {
             MessageResponse messageResponse = new MessageResponse();
             messageResponse.setMessage("Erreur d'envoie de message");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(messageResponse);
         }
     }
+
+    // Messages reçus sur une location, réservés à son propriétaire
+    @GetMapping(value = "/rentals/{id_rental}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MessagesResponse> getRentalMessages(
+            @AuthenticationPrincipal JwtPrincipal principal,
+            @PathVariable("id_rental") Integer idRental,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+
+        Optional<Integer> beforeId = parseCursor(cursor);
+        if (cursor != null && !cursor.isBlank() && beforeId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Optional<Integer> ownerId = messageService.findRentalOwnerId(idRental);
+        if (ownerId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (principal == null || !Objects.equals(ownerId.get(), principal.id())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        int pageSize = pageSize(size);
+        // Un message de plus que la page permet de savoir s'il existe une page suivante
+        return ResponseEntity.ok(toResponse(
+                messageService.getRentalMessagesPage(idRental, beforeId.orElse(null), pageSize + 1), pageSize));
+    }
+
+    // Boîte de réception : messages reçus sur toutes les locations de l'utilisateur connecté
+    @GetMapping(value = "/inbox", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MessagesResponse> getInbox(
+            @AuthenticationPrincipal JwtPrincipal principal,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Optional<Integer> beforeId = parseCursor(cursor);
+        if (cursor != null && !cursor.isBlank() && beforeId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        int pageSize = pageSize(size);
+        return ResponseEntity.ok(toResponse(
+                messageService.getInboxPage(principal.id(), beforeId.orElse(null), pageSize + 1), pageSize));
+    }
+
+    // Flux SSE des nouveaux messages reçus sur les locations de l'utilisateur connecté.
+    // À la reconnexion, Last-Event-ID permet de recevoir d'abord les messages manqués.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessages(
+            @AuthenticationPrincipal JwtPrincipal principal,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Messages manqués lus par le hub, une fois l'abonné enregistré
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")  // Pas de mise en tampon par un proxy nginx
+                .body(messageNotificationHub.subscribe(principal.id(), parseCursor(lastEventId).orElse(null),
+                        (afterId, limit) -> messageService.getInboxAfter(principal.id(), afterId, limit)));
+    }
+
+    // Le curseur est l'id du dernier message de la page précédente
+    private static Optional<Integer> parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Integer.valueOf(cursor));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private int pageSize(Integer size) {
+        return Math.min(size == null || size <= 0 ? defaultPageSize : size, maxPageSize);
+    }
+
+    private static MessagesResponse toResponse(List<MessageDTO> messages, int pageSize) {
+        MessagesResponse messagesResponse = new MessagesResponse();
+        boolean hasNext = messages.size() > pageSize;
+        if (hasNext) {
+            messages = messages.subList(0, pageSize);
+            messagesResponse.setNext(String.valueOf(messages.get(messages.size() - 1).id()));
+        }
+        messagesResponse.setMessages(messages);
+        return messagesResponse;
+    }
+
+    @ExceptionHandler(MessageQueueFullException.class)
+    public ResponseEntity<MessageResponse> handleMessageQueueFullException(MessageQueueFullException e) {
+        MessageResponse messageResponse = new MessageResponse();
+        messageResponse.setMessage(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(messageResponse);
+    }
 }
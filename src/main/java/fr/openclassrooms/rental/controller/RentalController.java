@@ -1,22 +1,38 @@
 package fr.openclassrooms.rental.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.dto.RentalFilter;
+import fr.openclassrooms.rental.dto.RentalSort;
+import fr.openclassrooms.rental.dto.RentalsVersion;
 import fr.openclassrooms.rental.entite.Rental;
 import fr.openclassrooms.rental.entite.Utilisateur;
 import fr.openclassrooms.rental.models.RentalsResponse;
+import fr.openclassrooms.rental.exception.InvalidImageException;
 import fr.openclassrooms.rental.securite.JwtService;
+import fr.openclassrooms.rental.service.ImageStorageService;
 import fr.openclassrooms.rental.service.RentalService;
+import fr.openclassrooms.rental.service.ThumbnailService;
 import fr.openclassrooms.rental.service.UtilisateurService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/rentals")
@@ -25,21 +41,36 @@ public class RentalController {
     private final RentalService rentalService;
     private UtilisateurService utilisateurService;
     private JwtService jwtService;
+    private final ImageStorageService imageStorageService;
+    private final ThumbnailService thumbnailService;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
-    public RentalController(RentalService rentalService,UtilisateurService utilisateurService,JwtService jwtService) {
+    public RentalController(RentalService rentalService,UtilisateurService utilisateurService,JwtService jwtService,
+                            ImageStorageService imageStorageService, ThumbnailService thumbnailService,
+                            ObjectMapper objectMapper,
+                            @Value("${rental.pagination.default-page-size:50}") int defaultPageSize,
+                            @Value("${rental.pagination.max-page-size:100}") int maxPageSize) {
         this.rentalService = rentalService;
         this.utilisateurService =utilisateurService;
         this.jwtService=jwtService;
+        this.imageStorageService = imageStorageService;
+        this.thumbnailService = thumbnailService;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Rental> createRental(
             @RequestHeader("Authorization") String authHeader,
             @RequestParam("name") String name,
-            @RequestParam("surface") String surface,
-            @RequestParam("price") String price,
+            @RequestParam("surface") BigDecimal surface,
+            @RequestParam("price") BigDecimal price,
             @RequestParam("description") String description,
-            @RequestParam("picture") MultipartFile imageFile) {
+            @RequestParam(value = "picture", required = false) MultipartFile imageFile,
+            @RequestParam(value = "pictureRef", required = false) String pictureRef) throws IOException {
 
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -47,76 +78,204 @@ public class RentalController {
         }
 
         String token = authHeader.substring(7);
-        UserDetails userDetails;
-        // Validez le token
-        if (!jwtService.isTokenGloballyValid(token) ){
+        // Valide le token en un seul parsing
+        Optional<Claims> claims = jwtService.verifyToken(token);
+        if (claims.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
         }
 
-        // Extrait le nom d'utilisateur du token
-        String username = jwtService.extractUsername(token);
+        // L'id de l'utilisateur est porté par le token ; les anciens tokens passent par l'email
+        Integer idUtilisateur = claims.get().get("id", Integer.class);
+        if (idUtilisateur == null) {
+            Utilisateur utilisateur = utilisateurService.loadUserByUsername(claims.get().getSubject());
+            idUtilisateur = utilisateur.getId();
+        }
 
-        // Récupère les informations utilisateur
-        Utilisateur utilisateur = utilisateurService.loadUserByUsername(username);
+        // Image envoyée avec le formulaire, ou référence d'une image déjà reçue par morceaux
+        if ((imageFile == null || imageFile.isEmpty()) && pictureRef == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
 
         Rental rental = new Rental();
         rental.setName(name);
         rental.setSurface(surface);
         rental.setPrice(price);
         rental.setDescription(description);
-        String baseUrl = "http://localhost:3001/api/images/";
-        rental.setPicture(baseUrl + imageFile.getOriginalFilename());
+        // Image stockée sous son empreinte SHA-256 : les contenus identiques ne sont conservés qu'une fois
+        String picture = pictureRef != null ? checkPictureRef(pictureRef) : imageStorageService.store(imageFile);
+        rental.setPicture(imageStorageService.urlOf(picture));
 
-        Rental createdRental = rentalService.createRentalForUser(utilisateur.getId(), rental);
+        Rental createdRental = rentalService.createRentalForUser(idUtilisateur, rental);
+        // Miniatures générées en arrière-plan : la réponse n'attend pas le traitement d'image
+        thumbnailService.generateAsync(picture);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdRental);
     }
 
+    @ExceptionHandler(InvalidImageException.class)
+    public ResponseEntity<String> handleInvalidImageException(InvalidImageException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<RentalsResponse> getRentals() {
-        List<Rental> rentals = rentalService.getAllRentals();  // Récupère les locations depuis le service
-        RentalsResponse rentalsResponse = new RentalsResponse();  // Crée une réponse pour les locations
-        List<RentalDTO> rentalsDto = new ArrayList<>();
+    public ResponseEntity<RentalsResponse> getRentals(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(value = "minSurface", required = false) BigDecimal minSurface,
+            @RequestParam(value = "sort", required = false) String sortParam,
+            WebRequest webRequest) {
 
-        if (rentals != null && !rentals.isEmpty()) {
-            rentalsDto = rentals.stream()
-                    .map(rental -> rentalService.convertToDTO(rental))
-                    .collect(Collectors.toList());
+        Optional<RentalSort> sort = RentalSort.parse(sortParam);
+        if (sort.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        RentalFilter filter = new RentalFilter(minPrice, maxPrice, minSurface);
 
-        if (!rentalsDto.isEmpty()) {
-            rentalsResponse.setRentals(rentalsDto);
-            return ResponseEntity.status(HttpStatus.OK).body(rentalsResponse);
-        } else {
+        // Le curseur est l'id de la dernière location de la page précédente ("prix_id" pour un tri par prix)
+        Integer afterId = null;
+        BigDecimal afterPrice = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                if (sort.get().byPrice()) {
+                    int separateur = cursor.lastIndexOf('_');
+                    afterPrice = new BigDecimal(cursor.substring(0, separateur));
+                    afterId = Integer.valueOf(cursor.substring(separateur + 1));
+                } else {
+                    afterId = Integer.valueOf(cursor);
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+        }
+        // Taille de page bornée côté serveur
+        int pageSize = Math.min(size == null || size <= 0 ? defaultPageSize : size, maxPageSize);
+
+        // GET conditionnel : la version du catalogue (une requête d'agrégat) suffit à répondre 304
+        RentalsVersion version = rentalService.getCatalogueVersion();
+        if (version.count() == 0) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+        long lastModified = toEpochMilli(version.lastUpdatedAt());
+        String etag = "W/\"" + version.count() + "-" + lastModified + "-" + cursor + "-" + pageSize
+                + "-" + sort.get() + "-" + minPrice + "-" + maxPrice + "-" + minSurface + "\"";
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
+        // Une location de plus que la page permet de savoir s'il existe une page suivante
+        List<RentalDTO> rentalsDto = rentalService.getRentalsPage(filter, sort.get(), afterPrice, afterId, pageSize + 1);
+        RentalsResponse rentalsResponse = new RentalsResponse();  // Crée une réponse pour les locations
+
+        // Sans filtre, une page vide signifie qu'il n'y a plus de location ; un filtre peut ne rien trouver
+        if (rentalsDto.isEmpty() && filter.isEmpty() && !sort.get().byPrice()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        boolean hasNext = rentalsDto.size() > pageSize;
+        if (hasNext) {
+            rentalsDto = rentalsDto.subList(0, pageSize);
+        }
+
+        rentalsResponse.setRentals(rentalsDto);
+        if (hasNext) {
+            RentalDTO last = rentalsDto.get(rentalsDto.size() - 1);
+            rentalsResponse.setNext(sort.get().byPrice()
+                    ? last.getPrice().toPlainString() + "_" + last.getId()
+                    : String.valueOf(last.getId()));
+        }
+        return ResponseEntity.status(HttpStatus.OK)
+                .cacheControl(CacheControl.noCache())  // Le navigateur garde la réponse mais la revalide
+                .body(rentalsResponse);
     }
 
-    @GetMapping("/{id_rental}")
-    public ResponseEntity<RentalDTO> getRentalById(@PathVariable("id_rental") Integer idRental) {
-        Rental rental = rentalService.getRentalById(idRental);
+    // Catalogue complet diffusé en flux : la mémoire utilisée ne dépend pas du nombre de locations
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamRentals(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            rentalService.writeAllRentals(generator);
+        }
+    }
+
+    // Recherche plein texte, classée par pertinence ; pas de pagination au-delà de la taille demandée
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RentalsResponse> searchRentals(
+            @RequestParam("q") String query,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(value = "minSurface", required = false) BigDecimal minSurface) {
+
+        if (query.isBlank()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        int pageSize = Math.min(size == null || size <= 0 ? defaultPageSize : size, maxPageSize);
+        RentalsResponse rentalsResponse = new RentalsResponse();
+        rentalsResponse.setRentals(rentalService.searchRentals(query,
+                new RentalFilter(minPrice, maxPrice, minSurface), pageSize));
+        return ResponseEntity.status(HttpStatus.OK).body(rentalsResponse);
+    }
 
-        if (rental != null) {
-            return ResponseEntity.status(HttpStatus.OK).body(rentalService.convertToDTO(rental));
-        } else {
+    @GetMapping("/{id_rental}")
+    public ResponseEntity<RentalDTO> getRentalById(@PathVariable("id_rental") Integer idRental, WebRequest webRequest) {
+        // GET conditionnel sur la date de modification, avant tout chargement de la location
+        Optional<LocalDateTime> updatedAt = rentalService.findRentalUpdatedAt(idRental);
+        if (updatedAt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+        if (webRequest.checkNotModified(rentalEtag(idRental, updatedAt.get()), toEpochMilli(updatedAt.get()))) {
+            return null;
+        }
+
+        return rentalService.findRentalDtoById(idRental)
+                .map(rentalDto -> ResponseEntity.status(HttpStatus.OK)
+                        .eTag(rentalEtag(rentalDto.getId(), rentalDto.getUpdated_at()))
+                        .lastModified(toEpochMilli(rentalDto.getUpdated_at()))
+                        .cacheControl(CacheControl.noCache())
+                        .body(rentalDto))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     @PutMapping(value="/{id}" ,consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Rental> updateRental(
             @PathVariable Integer id,
             @RequestParam("name") String name,
-            @RequestParam("surface") String surface,
-            @RequestParam("price") String price,
-            @RequestParam("description") String description) {
+            @RequestParam("surface") BigDecimal surface,
+            @RequestParam("price") BigDecimal price,
+            @RequestParam("description") String description,
+            @RequestParam(value = "pictureRef", required = false) String pictureRef) {
 
         Rental rental = new Rental();
         rental.setName(name);
         rental.setSurface(surface);
         rental.setPrice(price);
         rental.setDescription(description);
+        if (pictureRef != null) {
+            rental.setPicture(imageStorageService.urlOf(checkPictureRef(pictureRef)));
+        }
 
         Rental updatedRental = rentalService.updateRental(id, rental);
+        if (pictureRef != null) {
+            thumbnailService.generateAsync(pictureRef);
+        }
         return ResponseEntity.ok(updatedRental);
     }
-}
\ No newline at end of file
+
+    // Une référence d'image doit désigner une image déjà présente dans le stockage
+    private String checkPictureRef(String pictureRef) {
+        if (!imageStorageService.exists(pictureRef)) {
+            throw new InvalidImageException("Image inconnue : " + pictureRef);
+        }
+        return pictureRef;
+    }
+
+    private static String rentalEtag(Integer id, LocalDateTime updatedAt) {
+        return "W/\"" + id + "-" + toEpochMilli(updatedAt) + "\"";
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime == null ? -1 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
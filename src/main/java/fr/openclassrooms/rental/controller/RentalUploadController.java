@@ -0,0 +1,118 @@
+package fr.openclassrooms.rental.controller;
+
+import fr.openclassrooms.rental.dto.UploadStartDTO;
+import fr.openclassrooms.rental.dto.UploadStatusDTO;
+import fr.openclassrooms.rental.dto.UploadedPictureDTO;
+import fr.openclassrooms.rental.exception.ChunkOffsetConflictException;
+import fr.openclassrooms.rental.exception.InvalidChunkException;
+import fr.openclassrooms.rental.exception.InvalidImageException;
+import fr.openclassrooms.rental.exception.UploadSessionNotFoundException;
+import fr.openclassrooms.rental.securite.JwtPrincipal;
+import fr.openclassrooms.rental.service.ChunkedUploadService;
+import fr.openclassrooms.rental.service.ImageStorageService;
+import fr.openclassrooms.rental.service.ThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Envoi des images de location par morceaux :
+ * POST /rentals/uploads ouvre une session, PUT /rentals/uploads/{id}?offset=n envoie un morceau
+ * (corps application/octet-stream, empreinte facultative dans l'en-tête X-Chunk-Sha256),
+ * GET /rentals/uploads/{id} donne la position de reprise et POST /rentals/uploads/{id}/commit
+ * renvoie la référence de l'image, à passer en pictureRef à la création ou la modification d'une location.
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/rentals/uploads")
+public class RentalUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final ImageStorageService imageStorageService;
+    private final ThumbnailService thumbnailService;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadStatusDTO> begin(@AuthenticationPrincipal JwtPrincipal principal,
+                                                 @RequestBody UploadStartDTO uploadStart) throws IOException {
+        // Les POST et GET sur /rentals/** sont ouverts : l'authentification est vérifiée ici
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        UploadStatusDTO status = chunkedUploadService.begin(
+                uploadStart.fileName(), uploadStart.size(), uploadStart.sha256(), principal.id());
+        return ResponseEntity.status(HttpStatus.CREATED).body(status);
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadStatusDTO> writeChunk(@AuthenticationPrincipal JwtPrincipal principal,
+                                                      @PathVariable String id,
+                                                      @RequestParam("offset") long offset,
+                                                      @RequestHeader(value = "X-Chunk-Sha256", required = false) String sha256,
+                                                      HttpServletRequest request) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Le corps est lu directement depuis la requête, sans être chargé en mémoire
+        try (InputStream contenu = request.getInputStream()) {
+            return ResponseEntity.ok(chunkedUploadService.writeChunk(
+                    id, offset, request.getContentLengthLong(), contenu, sha256, principal.id()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadStatusDTO> status(@AuthenticationPrincipal JwtPrincipal principal,
+                                                  @PathVariable String id) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(chunkedUploadService.status(id, principal.id()));
+    }
+
+    @PostMapping("/{id}/commit")
+    public ResponseEntity<UploadedPictureDTO> commit(@AuthenticationPrincipal JwtPrincipal principal,
+                                                     @PathVariable String id) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String picture = chunkedUploadService.commit(id, principal.id());
+        // Miniatures préparées dès la réception, avant même la création de la location
+        thumbnailService.generateAsync(picture);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(new UploadedPictureDTO(picture, imageStorageService.urlOf(picture)));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@AuthenticationPrincipal JwtPrincipal principal,
+                                      @PathVariable String id) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        chunkedUploadService.abort(id, principal.id());
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(UploadSessionNotFoundException.class)
+    public ResponseEntity<String> handleUploadSessionNotFoundException(UploadSessionNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler({InvalidChunkException.class, InvalidImageException.class})
+    public ResponseEntity<String> handleInvalidChunkException(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    // 409 avec la position attendue : le client reprend l'envoi à partir de Upload-Offset
+    @ExceptionHandler(ChunkOffsetConflictException.class)
+    public ResponseEntity<String> handleChunkOffsetConflictException(ChunkOffsetConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Upload-Offset", String.valueOf(e.getExpectedOffset()))
+                .body(e.getMessage());
+    }
+}
@@ -6,12 +6,18 @@ import fr.openclassrooms.rental.entite.Utilisateur;
 import fr.openclassrooms.rental.exception.AuthenticationFailedException;
 import fr.openclassrooms.rental.exception.EmailAlreadyUsedException;
 import fr.openclassrooms.rental.exception.InvalidEmailException;
+import fr.openclassrooms.rental.exception.PasswordHashingSaturatedException;
+import fr.openclassrooms.rental.exception.TooManyLoginAttemptsException;
 import fr.openclassrooms.rental.securite.JwtService;
+import fr.openclassrooms.rental.securite.LoginThrottle;
 import fr.openclassrooms.rental.service.UtilisateurService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,6 +27,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.Optional;
 
 // Contrôleur REST pour gérer les utilisateurs, leur inscription, connexion, et les informations utilisateur.
 @Slf4j
@@ -31,6 +38,7 @@ public class UtilisateurController {
     private UtilisateurService utilisateurService;
     private AuthenticationManager authenticationManager;
     private JwtService jwtService;
+    private LoginThrottle loginThrottle;
     private static final Logger log = LoggerFactory.getLogger(UtilisateurController.class);
 
     // Inscription d'un nouvel utilisateur.
@@ -52,6 +60,20 @@ public class UtilisateurController {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
     }
 
+    @ExceptionHandler(PasswordHashingSaturatedException.class)
+    public ResponseEntity<String> handlePasswordHashingSaturatedException(PasswordHashingSaturatedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    public ResponseEntity<String> handleTooManyLoginAttemptsException(TooManyLoginAttemptsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
     @ExceptionHandler(UsernameNotFoundException.class)
     public ResponseEntity<String> handleUsernameNotFoundException(UsernameNotFoundException e) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
@@ -59,7 +81,10 @@ public class UtilisateurController {
 
     // Connexion d'un utilisateur en utilisant ses identifiants.
     @PostMapping(path = "login")
-    public Map<String, String> connexion(@RequestBody AuthentificationDTO authentificationDTO) {
+    public Map<String, String> connexion(@RequestBody AuthentificationDTO authentificationDTO, HttpServletRequest request) {
+
+        // Rejette les tentatives au-delà des limites avant toute vérification BCrypt
+        loginThrottle.checkAttempt(authentificationDTO.email(), request.getRemoteAddr());
 
         try {
             // Authentifie l'utilisateur
@@ -72,6 +97,9 @@ public class UtilisateurController {
                 // Génère et retourne un JWT en cas de succès
                 return this.jwtService.generate(authentificationDTO.email());
             }
+        } catch (PasswordHashingSaturatedException ex) {
+            // Pool de hachage saturé : ce n'est pas un échec d'identifiants
+            throw ex;
         } catch (Exception ex) {
             // En cas d'échec, lève une exception explicite
             throw new AuthenticationFailedException("Échec de l'authentification : identifiants invalides.");
@@ -95,13 +123,14 @@ public class UtilisateurController {
         // Extrait le token à partir du header.
         String token = authHeader.substring(7);
 
-        // Valide le token avec le service JWT.
-        if (!jwtService.isTokenGloballyValid(token)) {
+        // Valide le token avec le service JWT (un seul parsing).
+        Optional<Claims> claims = jwtService.verifyToken(token);
+        if (claims.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token invalide");
         }
 
-        // Extrait le nom d'utilisateur (email) à partir du token.
-        String username = jwtService.extractUsername(token);
+        // Extrait le nom d'utilisateur (email) à partir des claims vérifiées.
+        String username = claims.get().getSubject();
 
         // Charge les informations de l'utilisateur à partir du service utilisateur.
         Utilisateur utilisateur = utilisateurService.loadUserByUsername(username);
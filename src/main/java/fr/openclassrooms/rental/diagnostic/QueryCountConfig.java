@@ -0,0 +1,20 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Branche {@link QueryCountInspector} sur la fabrique de sessions Hibernate lorsque le comptage des requêtes est actif.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rental.diagnostic.query-count.enabled", havingValue = "true")
+public class QueryCountConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountCustomizer() {
+        return proprietes -> proprietes.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+    }
+}
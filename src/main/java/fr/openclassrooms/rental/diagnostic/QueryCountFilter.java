@@ -0,0 +1,62 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Nombre d'instructions SQL par requête HTTP, en remplacement de spring.jpa.show-sql.
+ * Rien n'est journalisé pour une requête normale (niveau DEBUG seulement) ; un avertissement est émis
+ * au-delà de warn-threshold instructions, ou lorsqu'une même instruction est répétée au moins repeat-threshold fois
+ * (N+1 : associations chargées une à une, comme Rental.utilisateur puis Utilisateur.role).
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+@ConditionalOnProperty(name = "rental.diagnostic.query-count.enabled", havingValue = "true")
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCountFilter.class);
+
+    private final int warnThreshold;
+    private final int repeatThreshold;
+
+    public QueryCountFilter(@Value("${rental.diagnostic.query-count.warn-threshold:20}") int warnThreshold,
+                            @Value("${rental.diagnostic.query-count.repeat-threshold:5}") int repeatThreshold) {
+        this.warnThreshold = warnThreshold;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.Scope scope = QueryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+        }
+        int instructions = scope.getStatementCount();
+        if (instructions > warnThreshold) {
+            log.warn("Requêtes SQL : method={} uri={} statements={} threshold={}",
+                    request.getMethod(), request.getRequestURI(), instructions, warnThreshold);
+        } else {
+            log.debug("Requêtes SQL : method={} uri={} statements={}", request.getMethod(), request.getRequestURI(), instructions);
+        }
+        for (Map.Entry<String, Integer> repetee : scope.getRepeatedStatements(repeatThreshold).entrySet()) {
+            log.warn("N+1 probable : method={} uri={} repeated={} sql={}",
+                    request.getMethod(), request.getRequestURI(), repetee.getValue(), repetee.getKey());
+        }
+    }
+}
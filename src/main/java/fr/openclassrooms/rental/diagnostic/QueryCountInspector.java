@@ -0,0 +1,16 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Transmet chaque instruction SQL préparée par Hibernate à {@link QueryCounter}, sans la modifier.
+ * Branché par {@link QueryCountConfig} ; les requêtes faites par JdbcTemplate ne passent pas ici.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryCounter.record(sql);
+        return sql;
+    }
+}
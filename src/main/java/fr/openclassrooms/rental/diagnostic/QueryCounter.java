@@ -0,0 +1,88 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Comptage des instructions SQL préparées par Hibernate sur le thread courant, par portée
+ * (une requête HTTP, voir {@link QueryCountFilter}, ou un bloc de test).
+ * Chaque texte SQL est compté séparément : une même instruction répétée avec des paramètres différents
+ * (chargement un à un des associations, N+1) se repère à son nombre d'occurrences.
+ * Hors portée ouverte, l'enregistrement est sans effet.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<Scope> COURANTE = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    /**
+     * Ouvre une portée sur le thread courant, à fermer par try-with-resources.
+     * Une portée ouverte dans une autre (filtre HTTP exécuté par MockMvc dans un test) lui reverse ses comptes à la fermeture.
+     */
+    public static Scope start() {
+        Scope scope = new Scope(COURANTE.get());
+        COURANTE.set(scope);
+        return scope;
+    }
+
+    static void record(String sql) {
+        Scope scope = COURANTE.get();
+        if (scope != null) {
+            scope.add(sql, 1);
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final Map<String, Integer> instructions = new HashMap<>();
+        private int total;
+        private boolean fermee;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void add(String sql, int occurrences) {
+            instructions.merge(sql, occurrences, Integer::sum);
+            total += occurrences;
+        }
+
+        public int getStatementCount() {
+            return total;
+        }
+
+        /**
+         * Instructions exécutées au moins {@code minOccurrences} fois, de la plus répétée à la moins répétée.
+         */
+        public Map<String, Integer> getRepeatedStatements(int minOccurrences) {
+            Map<String, Integer> repetees = new LinkedHashMap<>();
+            instructions.entrySet().stream()
+                    .filter(instruction -> instruction.getValue() >= minOccurrences)
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .forEach(instruction -> repetees.put(instruction.getKey(), instruction.getValue()));
+            return repetees;
+        }
+
+        public Map<String, Integer> getStatements() {
+            return getRepeatedStatements(1);
+        }
+
+        @Override
+        public void close() {
+            if (fermee) {
+                return;
+            }
+            fermee = true;
+            if (parent == null) {
+                COURANTE.remove();
+            } else {
+                COURANTE.set(parent);
+                instructions.forEach(parent::add);
+            }
+        }
+    }
+}
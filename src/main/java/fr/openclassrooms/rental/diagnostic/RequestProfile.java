@@ -0,0 +1,107 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import java.util.Locale;
+
+/**
+ * Durées par phase d'une requête HTTP profilée par {@link ServerTimingFilter}.
+ * Le profil est attaché au thread de la requête : les composants instrumentés (JwtFilter, requêtes SQL,
+ * écriture de la réponse) y ajoutent leurs mesures via les méthodes statiques, sans effet hors requête profilée.
+ * Les phases peuvent se recouvrir : le chargement de l'utilisateur compte aussi dans le temps SQL.
+ */
+public final class RequestProfile {
+
+    public enum Phase {
+        JWT("jwt"),    // Vérification du token (cache compris)
+        USER("user"),  // Chargement de l'utilisateur en base par JwtFilter
+        DB("db"),      // Exécution des requêtes SQL
+        JSON("json");  // Écriture du corps de la réponse (sérialisation Jackson)
+
+        private final String metrique;
+
+        Phase(String metrique) {
+            this.metrique = metrique;
+        }
+    }
+
+    private static final ThreadLocal<RequestProfile> COURANT = new ThreadLocal<>();
+
+    private final long debut = System.nanoTime();
+    private final long[] durees = new long[Phase.values().length];
+    private int sqlStatements;
+    private long debutEcriture;
+    private long total;
+
+    private RequestProfile() {
+    }
+
+    static RequestProfile start() {
+        RequestProfile profile = new RequestProfile();
+        COURANT.set(profile);
+        return profile;
+    }
+
+    // Clôt le profil : l'écriture de la réponse court jusqu'au retour dans le filtre
+    void finish() {
+        COURANT.remove();
+        long fin = System.nanoTime();
+        if (debutEcriture != 0) {
+            durees[Phase.JSON.ordinal()] = fin - debutEcriture;
+        }
+        total = fin - debut;
+    }
+
+    public static void record(Phase phase, long nanos) {
+        RequestProfile profile = COURANT.get();
+        if (profile != null) {
+            profile.durees[phase.ordinal()] += nanos;
+        }
+    }
+
+    public static void recordStatement(long nanos) {
+        RequestProfile profile = COURANT.get();
+        if (profile != null) {
+            profile.durees[Phase.DB.ordinal()] += nanos;
+            profile.sqlStatements++;
+        }
+    }
+
+    // Début de l'écriture du corps ; seule la première écriture compte
+    public static void markBodyWrite() {
+        RequestProfile profile = COURANT.get();
+        if (profile != null && profile.debutEcriture == 0) {
+            profile.debutEcriture = System.nanoTime();
+        }
+    }
+
+    public long getDuration(Phase phase) {
+        return durees[phase.ordinal()];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getSqlStatements() {
+        return sqlStatements;
+    }
+
+    /**
+     * Valeur de l'en-tête Server-Timing (durées en millisecondes),
+     * par exemple {@code jwt;dur=0.052, user;dur=0, db;dur=3.871;desc="2 statements", json;dur=0.410, total;dur=6.204}.
+     */
+    String toServerTiming() {
+        StringBuilder entete = new StringBuilder(128);
+        for (Phase phase : Phase.values()) {
+            entete.append(phase.metrique).append(";dur=").append(millis(durees[phase.ordinal()]));
+            if (phase == Phase.DB) {
+                entete.append(";desc=\"").append(sqlStatements).append(" statements\"");
+            }
+            entete.append(", ");
+        }
+        return entete.append("total;dur=").append(millis(total)).toString();
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
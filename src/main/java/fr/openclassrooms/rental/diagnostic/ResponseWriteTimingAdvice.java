@@ -0,0 +1,32 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Marque la fin du traitement par le contrôleur et le début de l'écriture du corps de la réponse,
+ * pour la phase json de {@link RequestProfile}.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "rental.diagnostic.server-timing.enabled", havingValue = "true")
+public class ResponseWriteTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestProfile.markBodyWrite();
+        return body;
+    }
+}
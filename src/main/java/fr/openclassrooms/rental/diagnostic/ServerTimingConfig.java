@@ -0,0 +1,21 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Branche {@link SqlTimingListener} sur chaque session Hibernate lorsque le profilage par requête est actif ;
+ * désactivé, Hibernate ne crée aucun écouteur.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rental.diagnostic.server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlTimingCustomizer() {
+        return proprietes -> proprietes.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingListener.class.getName());
+    }
+}
@@ -0,0 +1,71 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import fr.openclassrooms.rental.diagnostic.RequestProfile.Phase;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Profilage par requête, activé par rental.diagnostic.server-timing.enabled : durée de la vérification du token,
+ * du chargement de l'utilisateur, des requêtes SQL (nombre et temps) et de l'écriture de la réponse.
+ * Le détail est renvoyé dans l'en-tête Server-Timing (affiché par les outils de développement des navigateurs)
+ * et journalisé au-delà du seuil slow-threshold.
+ * Le corps de la réponse est retenu en mémoire jusqu'à la fin de la requête pour que l'en-tête puisse encore
+ * être ajouté : les réponses volumineuses ou en flux (images, /rentals/stream, SSE) ne sont pas profilées.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "rental.diagnostic.server-timing.enabled", havingValue = "true")
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private final Duration slowThreshold;
+
+    public ServerTimingFilter(@Value("${rental.diagnostic.server-timing.slow-threshold:PT0.5S}") Duration slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String chemin = request.getServletPath();
+        return chemin.startsWith("/images/") || chemin.equals("/rentals/stream") || chemin.equals("/messages/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper reponse = new ContentCachingResponseWrapper(response);
+        RequestProfile profile = RequestProfile.start();
+        try {
+            filterChain.doFilter(request, reponse);
+        } finally {
+            profile.finish();
+            reponse.setHeader("Server-Timing", profile.toServerTiming());
+            reponse.copyBodyToResponse();
+        }
+        if (profile.getTotal() >= slowThreshold.toNanos()) {
+            log.warn("Requête lente : method={} uri={} status={} total_ms={} jwt_ms={} user_ms={} db_ms={} db_statements={} json_ms={}",
+                    request.getMethod(), request.getRequestURI(), reponse.getStatus(),
+                    RequestProfile.millis(profile.getTotal()),
+                    RequestProfile.millis(profile.getDuration(Phase.JWT)),
+                    RequestProfile.millis(profile.getDuration(Phase.USER)),
+                    RequestProfile.millis(profile.getDuration(Phase.DB)),
+                    profile.getSqlStatements(),
+                    RequestProfile.millis(profile.getDuration(Phase.JSON)));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Mesure de chaque exécution JDBC faite par Hibernate (requête ou lot), ajoutée au profil de la requête en cours.
+ * Instancié par Hibernate pour chaque session (hibernate.session.events.auto, voir {@link ServerTimingConfig}) :
+ * une session n'est utilisée que par un thread à la fois. Les requêtes faites par JdbcTemplate ne passent pas ici.
+ */
+public class SqlTimingListener implements SessionEventListener {
+
+    private long debutExecution;
+    private long debutLot;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        debutExecution = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestProfile.recordStatement(System.nanoTime() - debutExecution);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        debutLot = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestProfile.recordStatement(System.nanoTime() - debutLot);
+    }
+}
@@ -0,0 +1,110 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Détection à l'exécution des threads virtuels épinglés à leur thread porteur.
+ * Un thread virtuel qui bloque (JDBC, Hibernate...) à l'intérieur d'un bloc synchronized ne libère pas
+ * son thread porteur : les autres requêtes attendent alors comme avec un pool de threads classique.
+ * Les événements JFR jdk.VirtualThreadPinned sont lus en continu ; chaque site d'épinglage
+ * (première méthode de l'application ou de ses bibliothèques dans la pile) est compté et journalisé
+ * avec sa pile à la première occurrence.
+ */
+@Component
+@ConditionalOnProperty(name = "rental.threads.pinning-monitor.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENEMENT = "jdk.VirtualThreadPinned";
+    private static final int PROFONDEUR_JOURNAL = 12;
+
+    private final Duration threshold;
+    private final Map<String, LongAdder> sites = new ConcurrentHashMap<>();
+    private final LongAdder pinnedEvents = new LongAdder();
+    private RecordingStream recordingStream;
+
+    public VirtualThreadPinningMonitor(@Value("${rental.threads.pinning-monitor.threshold:PT0.02S}") Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(EVENEMENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(EVENEMENT, this::onPinned);
+        recordingStream.startAsync();
+        log.info("Détection des threads virtuels épinglés active (seuil {} ms)", threshold.toMillis());
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String site = site(frames);
+        LongAdder compteur = sites.computeIfAbsent(site, cle -> new LongAdder());
+        compteur.increment();
+        if (compteur.sum() == 1) {
+            log.warn("Thread virtuel épinglé pendant {} ms sur {} :\n{}",
+                    event.getDuration().toMillis(), site, format(event.getStackTrace()));
+        } else {
+            log.debug("Thread virtuel épinglé pendant {} ms sur {} ({} fois)",
+                    event.getDuration().toMillis(), site, compteur.sum());
+        }
+    }
+
+    // Première méthode hors du JDK : c'est en général là que se trouve le bloc synchronized en cause
+    private static String site(List<RecordedFrame> frames) {
+        return frames.stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+                .filter(methode -> !methode.startsWith("java.") && !methode.startsWith("jdk.") && !methode.startsWith("sun."))
+                .findFirst()
+                .orElse("inconnu");
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(pile indisponible)";
+        }
+        return stackTrace.getFrames().stream()
+                .limit(PROFONDEUR_JOURNAL)
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+    public long getPinnedEvents() {
+        return pinnedEvents.sum();
+    }
+
+    /**
+     * Nombre d'épinglages observés par site.
+     */
+    public Map<String, Long> getPinnedSites() {
+        return sites.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum()));
+    }
+
+    @Override
+    public void destroy() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package fr.openclassrooms.rental.dto;
+
+/**
+ * Projection d'un message pour les listes (boîte de réception, messages d'une location).
+ */
+public record MessageDTO(Integer id, String message, Integer user_id, Integer rental_id) {
+}
@@ -1,19 +1,37 @@
 package fr.openclassrooms.rental.dto;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public class RentalDTO {
 
     private Integer id;
     private String name;
-    private String surface;
-    private String price;
+    private BigDecimal surface;
+    private BigDecimal price;
     private String picture;
     private String description;
     private Integer owner_id;
     private LocalDateTime created_at;
     private LocalDateTime updated_at;
 
+    public RentalDTO() {
+    }
+
+    // Utilisé par les projections JPQL de RentalRepository
+    public RentalDTO(Integer id, String name, BigDecimal surface, BigDecimal price, String picture, String description,
+                     Integer owner_id, LocalDateTime created_at, LocalDateTime updated_at) {
+        this.id = id;
+        this.name = name;
+        this.surface = surface;
+        this.price = price;
+        this.picture = picture;
+        this.description = description;
+        this.owner_id = owner_id;
+        this.created_at = created_at;
+        this.updated_at = updated_at;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -30,19 +48,19 @@ public class RentalDTO {
         this.name = name;
     }
 
-    public String getSurface() {
+    public BigDecimal getSurface() {
         return surface;
     }
 
-    public void setSurface(String surface) {
+    public void setSurface(BigDecimal surface) {
         this.surface = surface;
     }
 
-    public String getPrice() {
+    public BigDecimal getPrice() {
         return price;
     }
 
-    public void setPrice(String price) {
+    public void setPrice(BigDecimal price) {
         this.price = price;
     }
 
@@ -0,0 +1,15 @@
+package fr.openclassrooms.rental.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Filtres par intervalle de GET /rentals, appliqués en base. Un filtre null est ignoré.
+ */
+public record RentalFilter(BigDecimal minPrice, BigDecimal maxPrice, BigDecimal minSurface) {
+
+    public static final RentalFilter NONE = new RentalFilter(null, null, null);
+
+    public boolean isEmpty() {
+        return minPrice == null && maxPrice == null && minSurface == null;
+    }
+}
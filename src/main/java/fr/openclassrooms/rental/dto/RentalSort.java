@@ -0,0 +1,29 @@
+package fr.openclassrooms.rental.dto;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Ordre des locations de GET /rentals (paramètre sort : id, price, price,asc ou price,desc).
+ */
+public enum RentalSort {
+    ID,
+    PRICE_ASC,
+    PRICE_DESC;
+
+    public static Optional<RentalSort> parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return Optional.of(ID);
+        }
+        return switch (sort.trim().toLowerCase(Locale.ROOT).replace(" ", "")) {
+            case "id", "id,asc" -> Optional.of(ID);
+            case "price", "price,asc" -> Optional.of(PRICE_ASC);
+            case "price,desc" -> Optional.of(PRICE_DESC);
+            default -> Optional.empty();
+        };
+    }
+
+    public boolean byPrice() {
+        return this != ID;
+    }
+}
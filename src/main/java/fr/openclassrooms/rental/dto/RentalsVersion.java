@@ -0,0 +1,13 @@
+package fr.openclassrooms.rental.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Version du catalogue des locations, calculée par une seule requête d'agrégat :
+ * elle change dès qu'une location est créée, modifiée ou supprimée.
+ *
+ * @param lastUpdatedAt la date de dernière modification la plus récente (null si le catalogue est vide).
+ * @param count         le nombre de locations.
+ */
+public record RentalsVersion(LocalDateTime lastUpdatedAt, Long count) {
+}
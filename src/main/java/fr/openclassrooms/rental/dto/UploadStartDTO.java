@@ -0,0 +1,11 @@
+package fr.openclassrooms.rental.dto;
+
+/**
+ * Ouverture d'un envoi d'image par morceaux.
+ *
+ * @param fileName le nom du fichier (son extension détermine le format).
+ * @param size     la taille totale du fichier en octets.
+ * @param sha256   l'empreinte SHA-256 du fichier complet, vérifiée à la validation (facultative).
+ */
+public record UploadStartDTO(String fileName, Long size, String sha256) {
+}
@@ -0,0 +1,12 @@
+package fr.openclassrooms.rental.dto;
+
+/**
+ * État d'un envoi par morceaux : le client reprend l'envoi à partir de {@code offset}.
+ *
+ * @param id           l'identifiant de la session d'envoi.
+ * @param offset       le nombre d'octets reçus depuis le début du fichier.
+ * @param size         la taille totale attendue.
+ * @param maxChunkSize la taille maximale d'un morceau.
+ */
+public record UploadStatusDTO(String id, long offset, long size, long maxChunkSize) {
+}
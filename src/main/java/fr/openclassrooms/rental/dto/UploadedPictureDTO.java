@@ -0,0 +1,10 @@
+package fr.openclassrooms.rental.dto;
+
+/**
+ * Image reçue par morceaux et rangée dans le stockage.
+ *
+ * @param pictureRef la référence à transmettre à la création ou la modification d'une location.
+ * @param picture    l'URL publique de l'image.
+ */
+public record UploadedPictureDTO(String pictureRef, String picture) {
+}
@@ -11,14 +11,27 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "message")
+// Index composites (rental_id, id) et (owner_id, id) : messages d'une location ou reçus par un propriétaire
+// lus dans l'ordre des ids, sans tri ni parcours de la table
+@Table(name = "message", indexes = {
+        @Index(name = "idx_message_rental_id", columnList = "rental_id, id"),
+        @Index(name = "idx_message_owner_id", columnList = "owner_id, id")
+})
 public class Message {
+    /** Nombre d'ids réservés à chaque accès au générateur. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Ids tirés d'une séquence (table message_seq sous MySQL) par blocs : contrairement à IDENTITY,
+    // Hibernate connaît l'id avant l'INSERT et peut regrouper les insertions en lots JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_seq")
+    @SequenceGenerator(name = "message_seq", sequenceName = "message_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Integer id;
     private String message;
     private Integer user_id;
     private Integer rental_id;
+    // Propriétaire de la location, recopié à l'envoi : boîte de réception lue sur un seul index
+    private Integer owner_id;
 
     public Integer getId() {
         return id;
@@ -51,4 +64,12 @@ public class Message {
     public void setRental_id(Integer rental_id) {
         this.rental_id = rental_id;
     }
+
+    public Integer getOwner_id() {
+        return owner_id;
+    }
+
+    public void setOwner_id(Integer owner_id) {
+        this.owner_id = owner_id;
+    }
 }
@@ -8,6 +8,7 @@ import lombok.Setter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Getter
@@ -15,15 +16,21 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "rentals")
+// Index B-tree pour les filtres et tris par prix (avec l'id pour la pagination par curseur) et par surface
+@Table(name = "rentals", indexes = {
+        @Index(name = "idx_rentals_price_id", columnList = "price, id"),
+        @Index(name = "idx_rentals_surface", columnList = "surface")
+})
 public class Rental {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
     private String name;
-    private String surface;
-    private String price;
+    @Column(precision = 12, scale = 2)
+    private BigDecimal surface;
+    @Column(precision = 12, scale = 2)
+    private BigDecimal price;
     private String picture;
     @Lob
     private String description;
@@ -67,19 +74,19 @@ public class Rental {
         this.name = name;
     }
 
-    public String getSurface() {
+    public BigDecimal getSurface() {
         return surface;
     }
 
-    public void setSurface(String surface) {
+    public void setSurface(BigDecimal surface) {
         this.surface = surface;
     }
 
-    public String getPrice() {
+    public BigDecimal getPrice() {
         return price;
     }
 
-    public void setPrice(String price) {
+    public void setPrice(BigDecimal price) {
         this.price = price;
     }
 
@@ -0,0 +1,19 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsqu'un morceau ne commence pas dans la partie déjà reçue du fichier.
+ * Le client reprend l'envoi à la position attendue.
+ */
+public class ChunkOffsetConflictException extends RuntimeException {
+
+    private final long expectedOffset;
+
+    public ChunkOffsetConflictException(String message, long expectedOffset) {
+        super(message);
+        this.expectedOffset = expectedOffset;
+    }
+
+    public long getExpectedOffset() {
+        return expectedOffset;
+    }
+}
@@ -0,0 +1,10 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsqu'un morceau envoyé est invalide (taille, empreinte ou position).
+ */
+public class InvalidChunkException extends RuntimeException {
+    public InvalidChunkException(String message) {
+        super(message);
+    }
+}
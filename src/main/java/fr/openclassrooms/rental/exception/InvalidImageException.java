@@ -0,0 +1,10 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsque le fichier envoyé n'est pas une image acceptée.
+ */
+public class InvalidImageException extends RuntimeException {
+    public InvalidImageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsque la file d'écriture différée des messages est pleine.
+ * Le client peut renvoyer son message un peu plus tard.
+ */
+public class MessageQueueFullException extends RuntimeException {
+    public MessageQueueFullException(String message) {
+        super(message);
+    }
+}
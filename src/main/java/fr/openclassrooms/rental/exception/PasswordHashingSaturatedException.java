@@ -0,0 +1,11 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsque le pool de hachage des mots de passe est saturé.
+ * La requête est rejetée immédiatement plutôt que de monopoliser un thread de requête.
+ */
+public class PasswordHashingSaturatedException extends RuntimeException {
+    public PasswordHashingSaturatedException(String message) {
+        super(message);
+    }
+}
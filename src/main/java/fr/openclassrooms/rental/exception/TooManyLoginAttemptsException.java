@@ -0,0 +1,18 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsqu'un compte ou une adresse dépasse le nombre de tentatives de connexion autorisées.
+ */
+public class TooManyLoginAttemptsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyLoginAttemptsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,10 @@
+package fr.openclassrooms.rental.exception;
+
+/**
+ * Exception levée lorsque la session d'envoi par morceaux n'existe pas (inconnue, validée ou expirée).
+ */
+public class UploadSessionNotFoundException extends RuntimeException {
+    public UploadSessionNotFoundException(String message) {
+        super(message);
+    }
+}
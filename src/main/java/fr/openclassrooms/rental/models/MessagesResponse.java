@@ -0,0 +1,28 @@
+package fr.openclassrooms.rental.models;
+
+import fr.openclassrooms.rental.dto.MessageDTO;
+
+import java.util.List;
+
+public class MessagesResponse {
+
+    private List<MessageDTO> messages;
+    // Curseur de la page suivante (messages plus anciens), null s'il n'y en a plus
+    private String next;
+
+    public List<MessageDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<MessageDTO> messages) {
+        this.messages = messages;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
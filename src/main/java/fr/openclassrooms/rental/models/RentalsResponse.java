@@ -7,6 +7,8 @@ import java.util.List;
 public class RentalsResponse {
 
     private List<RentalDTO> rentals;
+    // Curseur de la page suivante, null s'il n'y en a plus
+    private String next;
 
     public List<RentalDTO> getRentals() {
         return rentals;
@@ -15,4 +17,12 @@ public class RentalsResponse {
     public void setRentals(List<RentalDTO> rentals) {
         this.rentals = rentals;
     }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
 }
@@ -1,8 +1,29 @@
 package fr.openclassrooms.rental.repository;
 
+import fr.openclassrooms.rental.dto.MessageDTO;
 import fr.openclassrooms.rental.entite.Message;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface MessageRepository extends CrudRepository<Message, Integer> {
 
+    // Projection directe en DTO, du plus récent au plus ancien
+    String MESSAGE_DTO = "select new fr.openclassrooms.rental.dto.MessageDTO(m.id, m.message, m.user_id, m.rental_id) "
+            + "from Message m ";
+
+    // Pagination par curseur (keyset) sur l'index (rental_id, id) : lecture d'une page, quelle que soit la taille de la table
+    @Query(MESSAGE_DTO + "where m.rental_id = :rentalId and m.id < :beforeId order by m.id desc")
+    List<MessageDTO> findDtoPageByRental(@Param("rentalId") Integer rentalId, @Param("beforeId") Integer beforeId, Limit limit);
+
+    // Messages reçus sur toutes les locations d'un propriétaire : une page lue dans l'ordre de l'index (owner_id, id)
+    @Query(MESSAGE_DTO + "where m.owner_id = :ownerId and m.id < :beforeId order by m.id desc")
+    List<MessageDTO> findDtoPageByOwner(@Param("ownerId") Integer ownerId, @Param("beforeId") Integer beforeId, Limit limit);
+
+    // Messages reçus après un id donné, du plus ancien au plus récent (reprise d'un flux SSE), sur le même index
+    @Query(MESSAGE_DTO + "where m.owner_id = :ownerId and m.id > :afterId order by m.id")
+    List<MessageDTO> findDtoByOwnerAfter(@Param("ownerId") Integer ownerId, @Param("afterId") Integer afterId, Limit limit);
 }
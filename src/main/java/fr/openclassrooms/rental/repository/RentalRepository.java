@@ -1,12 +1,87 @@
 package fr.openclassrooms.rental.repository;
 
+import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.dto.RentalsVersion;
 import fr.openclassrooms.rental.entite.Rental;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface RentalRepository extends JpaRepository<Rental, Integer> {
     Optional<Rental> findById(Integer integer);
+
+    // Projection directe en DTO : owner_id est lu dans la colonne de clé étrangère, sans charger l'utilisateur ni son rôle
+    String RENTAL_DTO = "select new fr.openclassrooms.rental.dto.RentalDTO(r.id, r.name, r.surface, r.price, r.picture, "
+            + "r.description, r.utilisateur.id, r.created_at, r.updated_at) from Rental r ";
+
+    // Filtres par intervalle, évalués en base ; un paramètre null désactive le filtre correspondant
+    String RENTAL_FILTERS = "and (:minPrice is null or r.price >= :minPrice) "
+            + "and (:maxPrice is null or r.price <= :maxPrice) "
+            + "and (:minSurface is null or r.surface >= :minSurface) ";
+
+    // Pagination par curseur (keyset) : la page suivante démarre après le dernier id lu, via l'index primaire
+    @Query(RENTAL_DTO + "where r.id > :afterId " + RENTAL_FILTERS + "order by r.id")
+    List<RentalDTO> findDtoPageAfter(@Param("afterId") Integer afterId,
+                                     @Param("minPrice") BigDecimal minPrice,
+                                     @Param("maxPrice") BigDecimal maxPrice,
+                                     @Param("minSurface") BigDecimal minSurface,
+                                     Limit limit);
+
+    // Tri par prix : curseur (prix, id) parcouru dans l'index (price, id) ; les locations sans prix sont exclues
+    @Query(RENTAL_DTO + "where r.price is not null "
+            + "and (:afterPrice is null or r.price > :afterPrice or (r.price = :afterPrice and r.id > :afterId)) "
+            + RENTAL_FILTERS + "order by r.price, r.id")
+    List<RentalDTO> findDtoPageByPriceAsc(@Param("afterPrice") BigDecimal afterPrice,
+                                          @Param("afterId") Integer afterId,
+                                          @Param("minPrice") BigDecimal minPrice,
+                                          @Param("maxPrice") BigDecimal maxPrice,
+                                          @Param("minSurface") BigDecimal minSurface,
+                                          Limit limit);
+
+    @Query(RENTAL_DTO + "where r.price is not null "
+            + "and (:afterPrice is null or r.price < :afterPrice or (r.price = :afterPrice and r.id < :afterId)) "
+            + RENTAL_FILTERS + "order by r.price desc, r.id desc")
+    List<RentalDTO> findDtoPageByPriceDesc(@Param("afterPrice") BigDecimal afterPrice,
+                                           @Param("afterId") Integer afterId,
+                                           @Param("minPrice") BigDecimal minPrice,
+                                           @Param("maxPrice") BigDecimal maxPrice,
+                                           @Param("minSurface") BigDecimal minSurface,
+                                           Limit limit);
+
+    @Query(RENTAL_DTO + "where r.id = :id")
+    Optional<RentalDTO> findDtoById(@Param("id") Integer id);
+
+    @Query(RENTAL_DTO + "where r.id in :ids")
+    List<RentalDTO> findDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    // Requêtes de version pour les GET conditionnels : aucune location n'est chargée
+    @Query("select new fr.openclassrooms.rental.dto.RentalsVersion(max(r.updated_at), count(r)) from Rental r")
+    RentalsVersion findCatalogueVersion();
+
+    @Query("select r.updated_at from Rental r where r.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Integer id);
+
+    @Query("select r.utilisateur.id from Rental r where r.id = :id")
+    Optional<Integer> findOwnerIdById(@Param("id") Integer id);
+
+    // Parcours complet en flux : lu par lots côté JDBC (nécessite useCursorFetch=true avec MySQL), à consommer dans une transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RENTAL_DTO + "order by r.id")
+    Stream<RentalDTO> streamAllDtos();
 }
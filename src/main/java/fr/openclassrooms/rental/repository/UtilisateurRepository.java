@@ -1,6 +1,7 @@
 package fr.openclassrooms.rental.repository;
 
 import fr.openclassrooms.rental.entite.Utilisateur;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,5 +9,7 @@ import java.util.Optional;
 
 @Repository
 public interface UtilisateurRepository extends CrudRepository<Utilisateur, Integer> {
+    // Rôle lu dans la même requête (jointure) : pas de second select par utilisateur chargé
+    @EntityGraph(attributePaths = "role")
     Optional<Utilisateur> findByEmail(String email);
 }
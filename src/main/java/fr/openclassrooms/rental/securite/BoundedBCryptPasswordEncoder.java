@@ -0,0 +1,156 @@
+package fr.openclassrooms.rental.securite;
+
+import fr.openclassrooms.rental.exception.PasswordHashingSaturatedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodeur BCrypt dont les calculs s'exécutent sur un pool dédié et borné.
+ * Un pic de connexions n'occupe ainsi qu'un nombre fixe de cœurs : les threads de requête en attente
+ * sont parqués (sans consommer de CPU) et, lorsque la file est pleine, la requête est rejetée
+ * immédiatement avec {@link PasswordHashingSaturatedException}. Une requête déjà en file n'attend pas
+ * au-delà du délai maximal (pool bloqué ou bien plus lent que prévu) : elle est rejetée de la même façon.
+ * La durée de chaque opération (attente dans la file comprise) et l'occupation du pool sont publiées
+ * dans le registre de métriques.
+ */
+public class BoundedBCryptPasswordEncoder extends BCryptPasswordEncoder implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedBCryptPasswordEncoder.class);
+
+    // Coût minimal accepté, quelle que soit la machine
+    static final int MIN_STRENGTH = 10;
+    static final int MAX_STRENGTH = 16;
+
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    /**
+     * @param timeout l'attente maximale d'un thread de requête, file et calcul compris.
+     */
+    public BoundedBCryptPasswordEncoder(int strength, int poolSize, int queueCapacity, Duration timeout,
+                                        MeterRegistry meterRegistry) {
+        super(strength);
+        this.strength = strength;
+        this.timeout = timeout;
+        AtomicInteger compteur = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + compteur.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Threads actifs, tâches en file et terminées (executor.*{name=bcrypt})
+        new ExecutorServiceMetrics(executor, "bcrypt", Tags.empty()).bindTo(meterRegistry);
+        this.encodeTimer = bcryptTimer(meterRegistry, "encode");
+        this.matchesTimer = bcryptTimer(meterRegistry, "matches");
+    }
+
+    private static Timer bcryptTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("rental.bcrypt")
+                .description("Durée d'un hachage ou d'une vérification BCrypt, attente dans la file comprise")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long debut = System.nanoTime();
+        try {
+            return execute(() -> super.encode(rawPassword));
+        } finally {
+            encodeTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long debut = System.nanoTime();
+        try {
+            return execute(() -> super.matches(rawPassword, encodedPassword));
+        } finally {
+            matchesTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private <T> T execute(Callable<T> tache) {
+        Future<T> future;
+        try {
+            future = executor.submit(tache);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingSaturatedException("Service momentanément surchargé, veuillez réessayer.");
+        }
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Retirée de la file si elle n'a pas commencé : le pool ne calcule pas un hash que personne n'attend
+            future.cancel(true);
+            log.warn("Hachage BCrypt non terminé après {} ms (file : {})", timeout.toMillis(), executor.getQueue().size());
+            throw new PasswordHashingSaturatedException("Service momentanément surchargé, veuillez réessayer.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hachage du mot de passe interrompu", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Échec du hachage du mot de passe", e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Détermine le coût BCrypt dont le hachage prend environ la durée cible sur cette machine.
+     * Chaque incrément du coût double le temps de calcul : on mesure un coût de référence
+     * puis on extrapole, sans jamais descendre sous {@link #MIN_STRENGTH}.
+     * @param cible La latence visée pour un hachage.
+     * @return Le coût calibré.
+     */
+    public static int calibrateStrength(Duration cible) {
+        final int reference = 8;
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(reference);
+        encoder.encode("calibration");  // Échauffement
+        long meilleur = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long debut = System.nanoTime();
+            encoder.encode("calibration");
+            meilleur = Math.min(meilleur, System.nanoTime() - debut);
+        }
+        double doublements = Math.log((double) cible.toNanos() / meilleur) / Math.log(2);
+        int strength = Math.max(MIN_STRENGTH, Math.min(MAX_STRENGTH, reference + (int) Math.round(doublements)));
+        log.info("Coût BCrypt calibré à {} ({} µs au coût {}, cible {} ms)",
+                strength, meilleur / 1000, reference, cible.toMillis());
+        return strength;
+    }
+}
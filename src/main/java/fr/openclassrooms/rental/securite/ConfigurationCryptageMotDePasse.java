@@ -1,15 +1,38 @@
 package fr.openclassrooms.rental.securite;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import java.time.Duration;
+
 @Configuration
 public class ConfigurationCryptageMotDePasse {
 
+    // Coût BCrypt imposé ; 0 pour le calibrer au démarrage sur la latence cible
+    @Value("${rental.bcrypt.strength:0}")
+    private int strength;
+
+    // Latence visée d'un hachage : calibre le coût (strength=0) et fixe l'attente maximale d'une requête
+    @Value("${rental.bcrypt.target-latency-ms:100}")
+    private long targetLatencyMs;
+
+    // Nombre de threads dédiés au hachage ; 0 pour un thread par cœur
+    @Value("${rental.bcrypt.pool-size:0}")
+    private int poolSize;
+
+    // Nombre de hachages en attente au-delà duquel les requêtes sont rejetées
+    @Value("${rental.bcrypt.queue-capacity:64}")
+    private int queueCapacity;
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        int cout = strength > 0 ? strength : BoundedBCryptPasswordEncoder.calibrateStrength(Duration.ofMillis(targetLatencyMs));
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        // Attente maximale : file pleine écoulée au rythme de la latence cible, avec une marge de deux
+        Duration delai = Duration.ofMillis(targetLatencyMs).multipliedBy(2L * (queueCapacity / threads + 1));
+        return new BoundedBCryptPasswordEncoder(cout, threads, queueCapacity, delai, meterRegistry);
     }
 }
@@ -1,8 +1,17 @@
 package fr.openclassrooms.rental.securite;
 
+import fr.openclassrooms.rental.enumer.TypeDeRole;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -10,9 +19,15 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
 import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.HEAD;
 import static org.springframework.http.HttpMethod.POST;
 
 // Classe de configuration de la sécurité de l'application
@@ -33,7 +48,13 @@ public class ConfigurationSecuriteApplication {
 
     // Configuration de la chaîne de filtres de sécurité
     @Bean
-    public SecurityFilterChain securityFilterChain(final HttpSecurity httpSecurity) throws Exception {
+    public SecurityFilterChain securityFilterChain(final HttpSecurity httpSecurity, Environment environment) throws Exception {
+        // Sur un port de gestion distinct lié à l'interface locale, les endpoints Actuator sont ouverts au collecteur
+        // de métriques ; sinon (port de l'API ou port de gestion joignable du réseau), seul l'état de santé reste public
+        AuthorizationManager<RequestAuthorizationContext> accesActuator =
+                isLocalManagementPort(environment)
+                        ? (authentication, contexte) -> new AuthorizationDecision(true)
+                        : AuthorityAuthorizationManager.hasRole(TypeDeRole.ADMINISTRATEUR.name());
         return
                 httpSecurity
                         // Désactive la protection CSRF (utile pour les APIs REST, mais attention en production)
@@ -43,6 +64,9 @@ public class ConfigurationSecuriteApplication {
                         .authorizeHttpRequests(
                                 authorize ->
                                         authorize
+                                                // Redispatch de fin d'une requête asynchrone (flux SSE) et page d'erreur d'une requête
+                                                // déjà autorisée : sans cela, un 400 de conversion de paramètre devient un 403
+                                                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                                                 // Permet les requêtes POST pour l'enregistrement et la connexion sans authentification
                                                 .requestMatchers(POST, "/auth/register").permitAll()
                                                 .requestMatchers(POST, "/auth/login").permitAll()
@@ -50,11 +74,16 @@ public class ConfigurationSecuriteApplication {
                                                 .requestMatchers(POST, "/rentals/**").permitAll()
                                                 .requestMatchers(POST, "/messages").permitAll()
                                                 .requestMatchers(GET, "/images/**").permitAll()
+                                                .requestMatchers(HEAD, "/images/**").permitAll()
 
                                                 // Permet les requêtes GET pour les locations et la documentation Swagger sans authentification
                                                 .requestMatchers(GET, "/rentals/**").permitAll()
                                                 .requestMatchers(GET, "/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
 
+                                                // Endpoints Actuator (métriques, santé)
+                                                .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                                                .requestMatchers(EndpointRequest.toAnyEndpoint()).access(accesActuator)
+
                                                 // Toute autre requête doit être authentifiée
                                                 .anyRequest().authenticated()
                         )
@@ -71,6 +100,19 @@ public class ConfigurationSecuriteApplication {
                         .build();
     }
 
+    // Port de gestion distinct de celui de l'API et écoutant uniquement sur l'interface locale (management.server.address)
+    private static boolean isLocalManagementPort(Environment environment) {
+        String adresse = environment.getProperty("management.server.address");
+        if (ManagementPortType.get(environment) != ManagementPortType.DIFFERENT || adresse == null || adresse.isBlank()) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(adresse.trim()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
     // Bean pour configurer l'AuthenticationManager, utilisé pour gérer l'authentification
     @Bean
     public AuthenticationManager authenticationManager(final AuthenticationConfiguration authenticationConfiguration) throws Exception {
@@ -1,33 +1,57 @@
 package fr.openclassrooms.rental.securite;
 
 import fr.openclassrooms.rental.controller.UtilisateurController;
+import fr.openclassrooms.rental.diagnostic.RequestProfile;
+import fr.openclassrooms.rental.entite.Utilisateur;
+import fr.openclassrooms.rental.service.UtilisateurService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
-    private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;  // Service qui charge les détails de l'utilisateur (base de données ou autre)
+    private final JwtVerificationCache jwtVerificationCache;  // Vérification des tokens, avec cache des tokens déjà vérifiés
+    private final UtilisateurService utilisateurService;  // Service qui charge les détails de l'utilisateur (base de données)
+    private final JwtRevocationRegistry jwtRevocationRegistry;  // Tokens émis avant un changement d'identifiants, refusés
+    private final boolean stateless;  // Reconstruit le principal depuis les claims, sans requête en base
+    private final Timer authenticatedTimer;  // Durée du filtre (hors suite de la chaîne) pour une requête authentifiée
+    private final Timer anonymousTimer;  // Idem sans token ou avec un token refusé
     private static final Logger log = LoggerFactory.getLogger(UtilisateurController.class);
 
 
-    public JwtFilter(JwtService jwtService, UserDetailsService userDetailsService) {
-        this.jwtService = jwtService;
-        this.userDetailsService = userDetailsService;
+    public JwtFilter(JwtVerificationCache jwtVerificationCache, UtilisateurService utilisateurService,
+                     JwtRevocationRegistry jwtRevocationRegistry,
+                     @Value("${rental.jwt.stateless:true}") boolean stateless,
+                     MeterRegistry meterRegistry) {
+        this.jwtVerificationCache = jwtVerificationCache;
+        this.utilisateurService = utilisateurService;
+        this.jwtRevocationRegistry = jwtRevocationRegistry;
+        this.stateless = stateless;
+        this.authenticatedTimer = filterTimer(meterRegistry, "authenticated");
+        this.anonymousTimer = filterTimer(meterRegistry, "anonymous");
+    }
+
+    private static Timer filterTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("rental.jwt.filter")
+                .description("Durée du filtre JWT : vérification du token et construction de l'authentification")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     // Méthode principale de filtrage des requêtes HTTP
@@ -46,37 +70,77 @@ public class JwtFilter extends OncePerRequestFilter {
             return;  // Sortir de la méthode pour ne pas appliquer le filtre JWT
         }
 
+        long debut = System.nanoTime();
+
         // Récupération de l'en-tête "Authorization" de la requête HTTP
         final String authHeader = request.getHeader("Authorization");
-        String jwt = null;
-        String username = null;
+        VerifiedToken verifiedToken = null;
 
         // Si l'en-tête contient un token JWT sous la forme "Bearer <token>"
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);  // Extrait le token en supprimant le préfixe "Bearer "
+            String jwt = authHeader.substring(7);  // Extrait le token en supprimant le préfixe "Bearer "
 
-            // Extraction du nom d'utilisateur à partir du token JWT
-            username = jwtService.extractUsername(jwt);
+            // Vérification du token (signature + expiration), évitée si le même token a déjà été vérifié
+            long debutVerification = System.nanoTime();
+            verifiedToken = jwtVerificationCache.verify(jwt).orElse(null);
+            RequestProfile.record(RequestProfile.Phase.JWT, System.nanoTime() - debutVerification);
         }
 
-        // Si le token est trouvé et que l'utilisateur n'est pas encore authentifié
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Charger les détails de l'utilisateur via le UserDetailsService
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        // Si le token est valide et que l'utilisateur n'est pas encore authentifié
+        boolean authenticated = false;
+        if (verifiedToken != null && verifiedToken.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UsernamePasswordAuthenticationToken authenticationToken = authenticate(verifiedToken);
 
-            // Si le token JWT est valide pour cet utilisateur
-            if (jwtService.isTokenValidForUser(jwt, userDetails)) {
-                // Créer un objet d'authentification basé sur les informations de l'utilisateur
-                UsernamePasswordAuthenticationToken authenticationToken =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            if (authenticationToken != null) {
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));  // Ajouter des détails de la requête (e.g., adresse IP)
 
                 // Définir l'authentification dans le contexte de sécurité
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                authenticated = true;
             }
         }
+        (authenticated ? authenticatedTimer : anonymousTimer).record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
 
         // Continuer à la chaîne de filtres (en appliquant les filtres suivants dans la pipeline)
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Construit l'authentification correspondant à un token vérifié.
+     * En mode stateless, le principal est reconstruit depuis les claims (id, email, rôle) sans requête en base.
+     * Le chargement de l'utilisateur en base ne sert plus que de repli, pour un token sans identité complète
+     * (émis avant l'ajout de l'id et du rôle). Un token émis avant un changement du mot de passe ou du rôle
+     * de son utilisateur est refusé dans les deux cas.
+     * @param verifiedToken Le token vérifié.
+     * @return L'authentification, ou null si le token est révoqué ou l'utilisateur n'est plus valide.
+     */
+    private UsernamePasswordAuthenticationToken authenticate(VerifiedToken verifiedToken) {
+        if (jwtRevocationRegistry.isRevoked(verifiedToken)) {
+            log.debug("Token JWT émis avant un changement d'identifiants : {}", verifiedToken.subject());
+            return null;
+        }
+        if (stateless && verifiedToken.hasIdentity()) {
+            JwtPrincipal principal = new JwtPrincipal(verifiedToken.userId(), verifiedToken.subject());
+            return new UsernamePasswordAuthenticationToken(principal, null, verifiedToken.authorities());
+        }
+
+        // Charger les détails de l'utilisateur en base
+        Utilisateur utilisateur;
+        long debutChargement = System.nanoTime();
+        try {
+            utilisateur = this.utilisateurService.loadUserByUsername(verifiedToken.subject());
+        } catch (UsernameNotFoundException e) {
+            log.debug("Token JWT d'un utilisateur inexistant : {}", verifiedToken.subject());
+            return null;
+        } finally {
+            RequestProfile.record(RequestProfile.Phase.USER, System.nanoTime() - debutChargement);
+        }
+
+        // Si le token JWT est valide pour cet utilisateur
+        if (!verifiedToken.isValidFor(utilisateur)) {
+            return null;
+        }
+        JwtPrincipal principal = new JwtPrincipal(utilisateur.getId(), utilisateur.getEmail());
+        return new UsernamePasswordAuthenticationToken(principal, null, utilisateur.getAuthorities());
+    }
+}
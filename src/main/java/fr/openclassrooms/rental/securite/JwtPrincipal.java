@@ -0,0 +1,18 @@
+package fr.openclassrooms.rental.securite;
+
+import java.security.Principal;
+
+/**
+ * Principal léger placé dans le contexte de sécurité par {@link JwtFilter}.
+ * Il est reconstruit depuis les claims du token, sans charger l'entité utilisateur.
+ *
+ * @param id    l'identifiant de l'utilisateur.
+ * @param email l'email de l'utilisateur (sujet du token).
+ */
+public record JwtPrincipal(Integer id, String email) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
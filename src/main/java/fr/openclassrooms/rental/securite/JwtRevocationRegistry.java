@@ -0,0 +1,53 @@
+package fr.openclassrooms.rental.securite;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des changements d'identifiants (mot de passe ou rôle modifié, compte révoqué).
+ * Les tokens émis avant le changement d'un utilisateur sont refusés par {@link JwtFilter} :
+ * l'utilisateur doit se reconnecter pour obtenir un token portant son rôle courant.
+ * Tout code qui modifie le mot de passe ou le rôle d'un utilisateur doit appeler {@link #revokeIssuedBefore(String)}.
+ * Le ré-hachage au coût BCrypt courant (UtilisateurService.updatePassword) ne change pas les identifiants
+ * et ne révoque rien.
+ * Le registre est propre à chaque nœud ; un changement n'a d'effet que pendant la durée de validité d'un token,
+ * il est ensuite oublié.
+ */
+@Component
+public class JwtRevocationRegistry {
+
+    private final Map<String, Instant> changements = new ConcurrentHashMap<>();
+
+    /**
+     * Révoque les tokens déjà émis pour un utilisateur.
+     * La date d'émission (iat) d'un token est à la seconde : le changement est enregistré à la seconde lui aussi,
+     * pour qu'un token émis juste après (nouvelle connexion) reste accepté.
+     * @param email L'email (sujet du token) de l'utilisateur.
+     */
+    public void revokeIssuedBefore(String email) {
+        Instant maintenant = Instant.now();
+        changements.put(email, maintenant.truncatedTo(ChronoUnit.SECONDS));
+        // Purge des changements devenus inutiles : plus aucun token concerné n'est valide
+        changements.values().removeIf(instant -> instant.plus(JwtService.TOKEN_VALIDITY).isBefore(maintenant));
+    }
+
+    /**
+     * Indique si un token a été émis avant le dernier changement d'identifiants de son utilisateur.
+     * @param verifiedToken Le token vérifié.
+     * @return True si le token doit être refusé.
+     */
+    public boolean isRevoked(VerifiedToken verifiedToken) {
+        if (changements.isEmpty()) {
+            return false;
+        }
+        Instant changement = changements.get(verifiedToken.subject());
+        if (changement == null) {
+            return false;
+        }
+        return verifiedToken.issuedAt() == null || verifiedToken.issuedAt().isBefore(changement);
+    }
+}
@@ -1,30 +1,43 @@
 package fr.openclassrooms.rental.securite;
 
 import fr.openclassrooms.rental.controller.UtilisateurController;
-import fr.openclassrooms.rental.dto.UtilisateurDTO;
 import fr.openclassrooms.rental.entite.Utilisateur;
 import fr.openclassrooms.rental.service.UtilisateurService;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Optional;
 
-@AllArgsConstructor
 @Service
 public class JwtService {
     // Clé secrète utilisée pour signer et vérifier les tokens JWT
-    private final String ENCRIPTION_KEY = "608f36e92dc66d97d5933f0e6371493cb4fc05b1aa8f8de64014732472303a7c";
-    private UtilisateurService utilisateurService;  // Service pour charger les utilisateurs
+    private static final String ENCRIPTION_KEY = "608f36e92dc66d97d5933f0e6371493cb4fc05b1aa8f8de64014732472303a7c";
+    private final UtilisateurService utilisateurService;  // Service pour charger les utilisateurs
     private static final Logger log = LoggerFactory.getLogger(UtilisateurController.class);  // Logger pour afficher des messages d'information
+    // Durée de validité d'un token
+    public static final Duration TOKEN_VALIDITY = Duration.ofMinutes(30);
+
+    // Clé HMAC et parser construits une seule fois : ils sont immuables et thread-safe
+    private final Key signingKey;
+    private final JwtParser jwtParser;
+
+    public JwtService(UtilisateurService utilisateurService) {
+        this.utilisateurService = utilisateurService;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(ENCRIPTION_KEY));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(this.signingKey)
+                .build();
+    }
 
     /**
      * Génère un token JWT pour un utilisateur donné (identifié par son username).
@@ -37,18 +50,28 @@ public class JwtService {
         return this.generateJwt(utilisateur);  // Génère un token pour cet utilisateur
     }
 
+    /**
+     * Vérifie le token (signature et expiration) en un seul parsing et renvoie ses claims.
+     * C'est le point d'entrée à privilégier : une seule vérification HMAC par requête.
+     * @param token Le token JWT.
+     * @return Les claims vérifiées, ou vide si le token est invalide ou expiré.
+     */
+    public Optional<Claims> verifyToken(String token) {
+        try {
+            return Optional.of(this.jwtParser.parseClaimsJws(token).getBody());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid JWT: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     /**
      * Extrait le nom d'utilisateur (subject) du token JWT.
      * @param token Le token JWT.
      * @return Le nom d'utilisateur (email) contenu dans le token.
      */
     public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(this.getKey())  // Utilise la clé secrète pour parser le token
-                .build()
-                .parseClaimsJws(token)  // Parse et valide le token
-                .getBody()
-                .getSubject();  // Extrait le sujet (username/email)
+        return getAllClaims(token).getSubject();  // Extrait le sujet (username/email)
     }
 
     /**
@@ -57,28 +80,16 @@ public class JwtService {
      * @return True si le token est expiré, sinon False.
      */
     public boolean isTokenExpired(String token) {
-        Date expirationDate = getExpirationDateFromToken(token);  // Récupère la date d'expiration
-        return expirationDate.before(new Date());  // Compare avec la date actuelle
+        return isExpired(getAllClaims(token));
     }
 
     /**
-     * Récupère la date d'expiration à partir du token JWT.
-     * @param token Le token JWT.
-     * @return La date d'expiration.
-     */
-    private Date getExpirationDateFromToken(String token) {
-        return this.getClaim(token, Claims::getExpiration);  // Extrait la réclamation "Expiration"
-    }
-
-    /**
-     * Méthode générique pour extraire un "claim" du token.
-     * @param token Le token JWT.
-     * @param function La fonction pour extraire un claim spécifique.
-     * @return La valeur du claim extrait.
+     * Vérifie si des claims déjà vérifiées sont expirées.
+     * @param claims Les claims du token.
+     * @return True si le token est expiré, sinon False.
      */
-    private <T> T getClaim(String token, Function<Claims, T> function) {
-        Claims claims = getAllClaims(token);  // Récupère toutes les réclamations (claims) du token
-        return function.apply(claims);  // Applique la fonction sur les claims
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());  // Compare avec la date actuelle
     }
 
     /**
@@ -87,11 +98,7 @@ public class JwtService {
      * @return Les claims sous forme d'un objet Claims.
      */
     private Claims getAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(this.getKey())  // Utilise la clé secrète pour parser
-                .build()
-                .parseClaimsJws(token)
-                .getBody();  // Renvoie les claims
+        return this.jwtParser.parseClaimsJws(token).getBody();  // Parse, valide et renvoie les claims
     }
 
     /**
@@ -101,15 +108,19 @@ public class JwtService {
      */
     private Map<String, String> generateJwt(Utilisateur utilisateur) {
         final long currentTime = System.currentTimeMillis();  // Temps actuel en millisecondes
-        final long expirationTime = currentTime + 30 * 60 * 1000;  // Expiration dans 30 minutes
-
-        // Création des claims
-        final Map<String, Object> claims = Map.of(
-                "name", utilisateur.getName(),  // Nom de l'utilisateur
-                "email", utilisateur.getEmail(),  // Email de l'utilisateur
-                Claims.EXPIRATION, new Date(expirationTime),  // Date d'expiration
-                Claims.SUBJECT, utilisateur.getEmail()  // Sujet (identifiant principal)
-        );
+        final long expirationTime = currentTime + TOKEN_VALIDITY.toMillis();  // Expiration dans 30 minutes
+
+        // Création des claims : l'id et le rôle permettent au filtre de reconstruire le principal sans requête en base
+        final Map<String, Object> claims = new HashMap<>();
+        claims.put("name", utilisateur.getName());  // Nom de l'utilisateur
+        claims.put("email", utilisateur.getEmail());  // Email de l'utilisateur
+        claims.put("id", utilisateur.getId());  // Identifiant de l'utilisateur
+        if (utilisateur.getRole() != null) {
+            claims.put("role", utilisateur.getRole().getLibelle().name());  // Rôle de l'utilisateur
+        }
+        claims.put(Claims.ISSUED_AT, new Date(currentTime));  // Date de création
+        claims.put(Claims.EXPIRATION, new Date(expirationTime));  // Date d'expiration
+        claims.put(Claims.SUBJECT, utilisateur.getEmail());  // Sujet (identifiant principal)
 
         // Construction du token JWT
         final String bearer = Jwts.builder()
@@ -117,30 +128,32 @@ public class JwtService {
                 .setExpiration(new Date(expirationTime))  // Date d'expiration
                 .setSubject(utilisateur.getEmail())  // Sujet principal
                 .setClaims(claims)  // Ajout des claims
-                .signWith(getKey(), SignatureAlgorithm.HS256)  // Signature avec l'algorithme HS256
+                .signWith(this.signingKey, SignatureAlgorithm.HS256)  // Signature avec l'algorithme HS256
                 .compact();
 
         return Map.of("token", bearer);  // Retourne le token dans une carte
     }
 
     /**
-     * Récupère la clé de signature à partir de la clé secrète codée en base64.
-     * @return Une instance de Key.
+     * Vérifie si un token est valide pour un utilisateur donné.
+     * @param token Le token JWT.
+     * @param userDetails Les détails de l'utilisateur.
+     * @return True si le token est valide, sinon False.
      */
-    private Key getKey() {
-        final byte[] decoder = Decoders.BASE64.decode(ENCRIPTION_KEY);  // Décodage de la clé base64
-        return Keys.hmacShaKeyFor(decoder);  // Génère une clé HMAC-SHA
+    public boolean isTokenValidForUser(String token, UserDetails userDetails) {
+        return verifyToken(token)
+                .map(claims -> isValidForUser(claims, userDetails))
+                .orElse(false);
     }
 
     /**
-     * Vérifie si un token est valide pour un utilisateur donné.
-     * @param token Le token JWT.
+     * Vérifie que des claims déjà vérifiées correspondent à l'utilisateur et ne sont pas expirées.
+     * @param claims Les claims du token.
      * @param userDetails Les détails de l'utilisateur.
      * @return True si le token est valide, sinon False.
      */
-    public boolean isTokenValidForUser(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);  // Extrait le username du token
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));  // Vérifie le username et l'expiration
+    public boolean isValidForUser(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isExpired(claims);  // Vérifie le username et l'expiration
     }
 
     /**
@@ -149,16 +162,6 @@ public class JwtService {
      * @return True si le token est valide, sinon False.
      */
     public boolean isTokenGloballyValid(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getKey())  // Vérifie le token avec la clé
-                    .build()
-                    .parseClaimsJws(token);  // Valide et parse le token
-            return true;  // Token valide
-        } catch (JwtException | IllegalArgumentException e) {
-            // En cas d'erreur de validation
-            System.out.println("Invalid JWT: " + e.getMessage());
-            return false;  // Token invalide
-        }
+        return verifyToken(token).isPresent();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package fr.openclassrooms.rental.securite;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache borné des tokens déjà vérifiés, indexé par l'empreinte SHA-256 du token.
+ * Un client renvoie le même token pendant toute sa durée de vie : les requêtes suivantes
+ * évitent ainsi la vérification HMAC et le parsing JSON.
+ * Chaque entrée expire à l'expiration du token lui-même ; l'éviction suit W-TinyLFU (Caffeine).
+ * La durée de chaque vérification est mesurée selon qu'elle a été servie par le cache ou non ;
+ * les succès, échecs et évictions du cache sont publiés sous le nom de cache "jwt".
+ */
+@Component
+public class JwtVerificationCache {
+
+    private final JwtService jwtService;
+    private final boolean enabled;
+    private final Cache<String, VerifiedToken> cache;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+
+    public JwtVerificationCache(JwtService jwtService,
+                                @Value("${rental.jwt.cache.enabled:true}") boolean enabled,
+                                @Value("${rental.jwt.cache.maximum-size:10000}") long maximumSize,
+                                MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.enabled = enabled;
+        Ticker ticker = Ticker.systemTicker();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .expireAfter(new ExpirationDuToken(ticker))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt");
+        this.hitTimer = verificationTimer(meterRegistry, "hit");
+        this.missTimer = verificationTimer(meterRegistry, enabled ? "miss" : "disabled");
+    }
+
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String cache) {
+        return Timer.builder("rental.jwt.verification")
+                .description("Durée de vérification d'un token JWT")
+                .tag("cache", cache)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Vérifie un token en passant par le cache lorsqu'il est activé.
+     * Les tokens invalides ne sont jamais mis en cache.
+     * @param token Le token JWT.
+     * @return Le token vérifié, ou vide s'il est invalide ou expiré.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        long debut = System.nanoTime();
+        if (!enabled) {
+            Optional<VerifiedToken> verified = jwtService.verifyToken(token).map(VerifiedToken::from);
+            missTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+            return verified;
+        }
+        String digest = digest(token);
+        VerifiedToken cached = cache.getIfPresent(digest);
+        if (cached != null) {
+            hitTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+            return Optional.of(cached);
+        }
+        Optional<VerifiedToken> verified = jwtService.verifyToken(token).map(VerifiedToken::from);
+        verified.ifPresent(value -> cache.put(digest, value));
+        missTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        return verified;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    // Une entrée vit exactement jusqu'à l'expiration du token qu'elle représente.
+    // L'expiration du token est une date murale : elle est ramenée sur l'horloge du cache (currentTime)
+    // à partir d'un point de correspondance relevé à la construction.
+    private static class ExpirationDuToken implements Expiry<String, VerifiedToken> {
+
+        private final Instant origineMurale;
+        private final long origineTicker;
+
+        ExpirationDuToken(Ticker ticker) {
+            this.origineMurale = Instant.now();
+            this.origineTicker = ticker.read();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            Instant maintenant = origineMurale.plusNanos(currentTime - origineTicker);
+            return Math.max(0, Duration.between(maintenant, value.expiration()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
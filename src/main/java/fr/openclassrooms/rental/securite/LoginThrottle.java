@@ -0,0 +1,126 @@
+package fr.openclassrooms.rental.securite;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.openclassrooms.rental.exception.TooManyLoginAttemptsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limitation des tentatives de connexion par compte (email) et par adresse cliente.
+ * Une tentative rejetée ne coûte aucune vérification BCrypt : le contrôle a lieu avant
+ * l'appel à l'AuthenticationManager.
+ * Chaque clé dispose d'un seau à jetons sans verrou ; le nombre de clés suivies est borné,
+ * ce qui garde la mémoire constante face à un flot de clés aléatoires.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final Limite limiteEmail;
+    private final Limite limiteAdresse;
+    private final Cache<String, Seau> seaux;
+
+    private final AtomicLong rejetsEmail = new AtomicLong();
+    private final AtomicLong rejetsAdresse = new AtomicLong();
+
+    public LoginThrottle(@Value("${rental.login.throttle.enabled:true}") boolean enabled,
+                         @Value("${rental.login.throttle.email.capacity:5}") int capaciteEmail,
+                         @Value("${rental.login.throttle.email.period:PT1M}") Duration periodeEmail,
+                         @Value("${rental.login.throttle.address.capacity:20}") int capaciteAdresse,
+                         @Value("${rental.login.throttle.address.period:PT1M}") Duration periodeAdresse,
+                         @Value("${rental.login.throttle.maximum-keys:100000}") long maximumKeys) {
+        this.enabled = enabled;
+        this.limiteEmail = new Limite(capaciteEmail, periodeEmail);
+        this.limiteAdresse = new Limite(capaciteAdresse, periodeAdresse);
+        // Un seau inutilisé pendant une période complète est de nouveau plein : inutile de le conserver
+        this.seaux = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(periodeEmail.compareTo(periodeAdresse) > 0 ? periodeEmail : periodeAdresse)
+                .build();
+    }
+
+    /**
+     * Consomme une tentative pour l'adresse cliente puis pour le compte.
+     * @param email L'email saisi.
+     * @param adresse L'adresse du client.
+     * @throws TooManyLoginAttemptsException si l'une des deux limites est atteinte.
+     */
+    public void checkAttempt(String email, String adresse) {
+        if (!enabled) {
+            return;
+        }
+        long attente = seau("ip:" + adresse).tryAcquire(limiteAdresse);
+        if (attente > 0) {
+            rejetsAdresse.incrementAndGet();
+            throw rejet(attente);
+        }
+        String compte = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+        attente = seau("email:" + compte).tryAcquire(limiteEmail);
+        if (attente > 0) {
+            rejetsEmail.incrementAndGet();
+            throw rejet(attente);
+        }
+    }
+
+    public long getRejectedByEmail() {
+        return rejetsEmail.get();
+    }
+
+    public long getRejectedByAddress() {
+        return rejetsAdresse.get();
+    }
+
+    public long getTrackedKeys() {
+        return seaux.estimatedSize();
+    }
+
+    private Seau seau(String cle) {
+        return seaux.get(cle, k -> new Seau());
+    }
+
+    private static TooManyLoginAttemptsException rejet(long attenteNanos) {
+        long secondes = Math.max(1, Duration.ofNanos(attenteNanos).toSeconds());
+        return new TooManyLoginAttemptsException("Trop de tentatives de connexion, veuillez réessayer plus tard.", secondes);
+    }
+
+    // Capacité d'un seau et intervalle de régénération d'un jeton
+    private record Limite(int capacite, long intervalleNanos) {
+        Limite(int capacite, Duration periode) {
+            this(capacite, periode.toNanos() / capacite);
+        }
+    }
+
+    /**
+     * Seau à jetons sous forme GCRA : l'état tient dans un seul long (instant théorique de la
+     * prochaine tentative), mis à jour par compare-and-set, sans verrou.
+     */
+    private static final class Seau {
+
+        private final AtomicLong prochainInstant = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * @return 0 si la tentative est acceptée, sinon le délai d'attente en nanosecondes.
+         */
+        long tryAcquire(Limite limite) {
+            final long tolerance = limite.intervalleNanos() * limite.capacite();
+            while (true) {
+                long maintenant = System.nanoTime();
+                long courant = prochainInstant.get();
+                long base = courant == Long.MIN_VALUE || courant - maintenant < 0 ? maintenant : courant;
+                long suivant = base + limite.intervalleNanos();
+                long depassement = suivant - maintenant - tolerance;
+                if (depassement > 0) {
+                    return depassement;
+                }
+                if (prochainInstant.compareAndSet(courant, suivant)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fr.openclassrooms.rental.securite;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Résultat immuable de la vérification d'un token JWT : ce dont le filtre a besoin,
+ * sans avoir à re-parser le token.
+ *
+ * @param subject     le sujet du token (email de l'utilisateur).
+ * @param userId      l'identifiant de l'utilisateur (null pour les tokens émis sans cette claim).
+ * @param authorities les rôles portés par le token (vide si le token n'en porte pas).
+ * @param issuedAt    l'instant d'émission du token (null s'il n'est pas renseigné).
+ * @param expiration  l'instant d'expiration du token.
+ */
+public record VerifiedToken(String subject, Integer userId, List<GrantedAuthority> authorities,
+                            Instant issuedAt, Instant expiration) {
+
+    /**
+     * Construit le résultat à partir de claims dont la signature a déjà été vérifiée.
+     * @param claims Les claims du token.
+     * @return Le token vérifié.
+     */
+    public static VerifiedToken from(Claims claims) {
+        String role = claims.get("role", String.class);
+        List<GrantedAuthority> authorities = role == null
+                ? Collections.emptyList()
+                : List.of(new SimpleGrantedAuthority("ROLE_" + role));
+        Date issuedAt = claims.getIssuedAt();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("id", Integer.class),
+                authorities,
+                issuedAt == null ? null : issuedAt.toInstant(),
+                claims.getExpiration().toInstant());
+    }
+
+    /**
+     * Indique si le token décrit entièrement l'utilisateur (id et rôle),
+     * ce qui permet de reconstruire le principal sans requête en base.
+     */
+    public boolean hasIdentity() {
+        return userId != null && !authorities.isEmpty();
+    }
+
+    public boolean isExpired() {
+        return expiration.isBefore(Instant.now());
+    }
+
+    /**
+     * Vérifie que le token correspond à l'utilisateur et n'est pas expiré.
+     * @param userDetails Les détails de l'utilisateur.
+     * @return True si le token est valide pour cet utilisateur, sinon False.
+     */
+    public boolean isValidFor(UserDetails userDetails) {
+        return subject.equals(userDetails.getUsername()) && !isExpired();
+    }
+}
@@ -0,0 +1,307 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.dto.UploadStatusDTO;
+import fr.openclassrooms.rental.exception.ChunkOffsetConflictException;
+import fr.openclassrooms.rental.exception.InvalidChunkException;
+import fr.openclassrooms.rental.exception.InvalidImageException;
+import fr.openclassrooms.rental.exception.UploadSessionNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Envoi d'images par morceaux, reprenable après une coupure réseau.
+ * Une session reçoit des morceaux écrits à leur position dans un fichier partiel (écriture positionnelle,
+ * sans recopie du début du fichier) ; chaque morceau peut porter son empreinte SHA-256, vérifiée avant
+ * de l'écrire. À la validation, le fichier complet est rangé dans le stockage adressé
+ * par contenu, comme une image envoyée en multipart.
+ * Les sessions inactives et les fichiers partiels orphelins sont supprimés périodiquement.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+    private static final int TAILLE_BLOC = 64 * 1024;
+    private static final String SUFFIXE_PARTIEL = ".part";
+
+    private final ImageStorageService imageStorageService;
+    private final Path repertoire;
+    private final long maxSize;
+    private final long maxChunkSize;
+    private final Duration sessionTtl;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(ImageStorageService imageStorageService,
+                                @Value("${rental.upload.chunked.max-size:52428800}") long maxSize,
+                                @Value("${rental.upload.chunked.max-chunk-size:1048576}") long maxChunkSize,
+                                @Value("${rental.upload.chunked.session-ttl:PT1H}") Duration sessionTtl) throws IOException {
+        this.imageStorageService = imageStorageService;
+        this.repertoire = imageStorageService.workDirectory("chunks");
+        this.maxSize = maxSize;
+        this.maxChunkSize = maxChunkSize;
+        this.sessionTtl = sessionTtl;
+    }
+
+    /**
+     * Ouvre une session d'envoi.
+     * @param nomFichier le nom du fichier, dont l'extension doit être celle d'une image acceptée.
+     * @param taille la taille totale annoncée.
+     * @param empreinte l'empreinte SHA-256 du fichier complet (facultative).
+     * @param idUtilisateur le propriétaire de la session.
+     * @throws InvalidImageException si le format n'est pas accepté.
+     * @throws InvalidChunkException si la taille ou l'empreinte annoncée est invalide.
+     */
+    public UploadStatusDTO begin(String nomFichier, Long taille, String empreinte, Integer idUtilisateur) throws IOException {
+        String extension = imageStorageService.extension(nomFichier);
+        if (taille == null || taille <= 0 || taille > maxSize) {
+            throw new InvalidChunkException("Taille de fichier invalide (maximum " + maxSize + " octets)");
+        }
+        String empreinteAttendue = empreinte == null || empreinte.isBlank() ? null : normalize(empreinte);
+        String id = UUID.randomUUID().toString();
+        Path partiel = repertoire.resolve(id + SUFFIXE_PARTIEL);
+        Files.createFile(partiel);
+        Session session = new Session(id, extension, taille, empreinteAttendue, idUtilisateur, partiel);
+        sessions.put(id, session);
+        return status(session);
+    }
+
+    /**
+     * Écrit un morceau à la position indiquée.
+     * Un morceau peut recouvrir une partie déjà reçue (renvoi après une réponse perdue), mais ne peut pas
+     * laisser de trou : sa position doit être au plus égale au nombre d'octets déjà reçus.
+     * Il n'est écrit qu'une fois sa taille et son empreinte vérifiées.
+     * @param id la session.
+     * @param offset la position du morceau dans le fichier.
+     * @param longueur la longueur annoncée du morceau (Content-Length), ou -1 si inconnue.
+     * @param contenu le contenu du morceau.
+     * @param empreinte l'empreinte SHA-256 du morceau (facultative).
+     * @param idUtilisateur l'utilisateur courant, qui doit être le propriétaire de la session.
+     * @throws ChunkOffsetConflictException si la position laisserait un trou.
+     * @throws InvalidChunkException si le morceau dépasse les tailles permises ou si son empreinte ne correspond pas.
+     */
+    public UploadStatusDTO writeChunk(String id, long offset, long longueur, InputStream contenu,
+                                      String empreinte, Integer idUtilisateur) throws IOException {
+        Session session = find(id, idUtilisateur);
+        if (longueur > maxChunkSize) {
+            throw new InvalidChunkException("Morceau trop grand (maximum " + maxChunkSize + " octets)");
+        }
+        session.lock.lock();
+        try {
+            ensureOpen(session);
+            if (offset < 0 || offset > session.recu) {
+                throw new ChunkOffsetConflictException("Position attendue : " + session.recu, session.recu);
+            }
+            // Le morceau (au plus max-chunk-size octets) est lu et vérifié en mémoire avant toute écriture :
+            // un renvoi invalide ou interrompu ne recouvre jamais des octets déjà acceptés
+            int limite = (int) Math.min(Math.min(maxChunkSize, session.taille - offset), Integer.MAX_VALUE - 1);
+            byte[] morceau = contenu.readNBytes(limite + 1);
+            if (morceau.length > limite) {
+                throw new InvalidChunkException("Le morceau dépasse la taille du fichier ou la taille maximale d'un morceau");
+            }
+            if (empreinte != null && !empreinte.isBlank()
+                    && !normalize(empreinte).equals(HexFormat.of().formatHex(ImageStorageService.sha256().digest(morceau)))) {
+                throw new InvalidChunkException("Empreinte du morceau invalide");
+            }
+            long ecrits = morceau.length;
+            ByteBuffer buffer = ByteBuffer.wrap(morceau);
+            try (FileChannel canal = FileChannel.open(session.partiel, StandardOpenOption.WRITE)) {
+                long position = offset;
+                while (buffer.hasRemaining()) {
+                    position += canal.write(buffer, position);
+                }
+            }
+            session.recu = Math.max(session.recu, offset + ecrits);
+            session.derniereActivite = Instant.now();
+            return status(session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Renvoie l'état d'une session, afin que le client reprenne l'envoi à la bonne position.
+     */
+    public UploadStatusDTO status(String id, Integer idUtilisateur) {
+        return status(find(id, idUtilisateur));
+    }
+
+    /**
+     * Valide l'envoi : le fichier complet est vérifié puis rangé sous son empreinte.
+     * @return le nom de l'image dans le stockage.
+     * @throws InvalidChunkException si le fichier est incomplet ou si son empreinte ne correspond pas.
+     */
+    public String commit(String id, Integer idUtilisateur) throws IOException {
+        Session session = find(id, idUtilisateur);
+        session.lock.lock();
+        try {
+            ensureOpen(session);
+            if (session.recu != session.taille) {
+                throw new InvalidChunkException("Fichier incomplet : " + session.recu + " octets reçus sur " + session.taille);
+            }
+            String empreinte = digest(session.partiel);
+            if (session.empreinteAttendue != null && !session.empreinteAttendue.equals(empreinte)) {
+                throw new InvalidChunkException("Empreinte du fichier invalide");
+            }
+            String nom = imageStorageService.moveToStore(session.partiel, empreinte, session.extension);
+            close(session);
+            return nom;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Abandonne une session et supprime son fichier partiel.
+     */
+    public void abort(String id, Integer idUtilisateur) throws IOException {
+        Session session = find(id, idUtilisateur);
+        session.lock.lock();
+        try {
+            close(session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Supprime les sessions inactives depuis plus que la durée de vie configurée,
+     * ainsi que les fichiers partiels sans session (redémarrage de l'application).
+     */
+    @Scheduled(fixedDelayString = "${rental.upload.chunked.cleanup-interval:PT5M}")
+    public void purgeExpiredSessions() {
+        Instant limite = Instant.now().minus(sessionTtl);
+        for (Session session : sessions.values()) {
+            // Une session en cours d'écriture n'est pas bloquée : elle sera examinée au prochain passage
+            if (session.derniereActivite.isBefore(limite) && session.lock.tryLock()) {
+                try {
+                    close(session);
+                    log.info("Session d'envoi {} expirée", session.id);
+                } catch (IOException e) {
+                    log.warn("Suppression impossible de {} : {}", session.partiel, e.getMessage());
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+        }
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            fichiers.filter(fichier -> isOrphan(fichier, limite)).forEach(fichier -> {
+                try {
+                    Files.deleteIfExists(fichier);
+                } catch (IOException e) {
+                    log.warn("Suppression impossible de {} : {}", fichier, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Parcours impossible de {} : {}", repertoire, e.getMessage());
+        }
+    }
+
+    private boolean isOrphan(Path fichier, Instant limite) {
+        String nom = fichier.getFileName().toString();
+        if (!nom.endsWith(SUFFIXE_PARTIEL)
+                || sessions.containsKey(nom.substring(0, nom.length() - SUFFIXE_PARTIEL.length()))) {
+            return false;
+        }
+        try {
+            return Files.getLastModifiedTime(fichier).toInstant().isBefore(limite);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Session find(String id, Integer idUtilisateur) {
+        Session session = sessions.get(id);
+        // Une session d'un autre utilisateur est traitée comme inexistante
+        if (session == null || !Objects.equals(session.idUtilisateur, idUtilisateur)) {
+            throw new UploadSessionNotFoundException("Session d'envoi introuvable : " + id);
+        }
+        return session;
+    }
+
+    // À appeler sous le verrou : la session a pu être validée ou expirer pendant l'attente
+    private void ensureOpen(Session session) {
+        if (session.fermee) {
+            throw new UploadSessionNotFoundException("Session d'envoi introuvable : " + session.id);
+        }
+    }
+
+    private void close(Session session) throws IOException {
+        session.fermee = true;
+        sessions.remove(session.id, session);
+        Files.deleteIfExists(session.partiel);
+    }
+
+    private UploadStatusDTO status(Session session) {
+        return new UploadStatusDTO(session.id, session.recu, session.taille, maxChunkSize);
+    }
+
+    private static String digest(Path fichier) throws IOException {
+        MessageDigest sha256 = ImageStorageService.sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(TAILLE_BLOC);
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            while (canal.read(buffer) != -1) {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static String normalize(String empreinte) {
+        String hex = empreinte.trim().toLowerCase(Locale.ROOT);
+        if (!hex.matches("[0-9a-f]{64}")) {
+            throw new InvalidChunkException("Empreinte SHA-256 invalide");
+        }
+        return hex;
+    }
+
+    private static final class Session {
+        private final String id;
+        private final String extension;
+        private final long taille;
+        private final String empreinteAttendue;
+        private final Integer idUtilisateur;
+        private final Path partiel;
+        private final ReentrantLock lock = new ReentrantLock();
+        // Nombre d'octets contigus reçus depuis le début du fichier
+        private volatile long recu;
+        private volatile Instant derniereActivite = Instant.now();
+        private volatile boolean fermee;
+
+        private Session(String id, String extension, long taille, String empreinteAttendue,
+                        Integer idUtilisateur, Path partiel) {
+            this.id = id;
+            this.extension = extension;
+            this.taille = taille;
+            this.empreinteAttendue = empreinteAttendue;
+            this.idUtilisateur = idUtilisateur;
+            this.partiel = partiel;
+        }
+    }
+}
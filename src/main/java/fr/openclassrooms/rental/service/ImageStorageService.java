@@ -0,0 +1,192 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.exception.InvalidImageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage des images adressé par contenu.
+ * Chaque image est recopiée sur disque par blocs (sans être chargée en mémoire) tout en calculant
+ * son empreinte SHA-256 ; le nom du fichier est cette empreinte. Deux envois identiques ne sont
+ * donc stockés qu'une fois, et deux fichiers différents portant le même nom ne se remplacent plus.
+ * Les fichiers sont répartis dans des sous-répertoires ab/cd/ tirés de l'empreinte.
+ */
+@Service
+public class ImageStorageService {
+
+    // Nom d'une image adressée par contenu : <sha256>.<extension>
+    private static final Pattern NOM_ADRESSE_PAR_CONTENU = Pattern.compile("^([0-9a-f]{64})\\.([a-z]+)$");
+    private static final Set<String> EXTENSIONS = Set.of("jpg", "png", "gif", "webp");
+    private static final int TAILLE_BLOC = 64 * 1024;
+
+    private final Path uploadDir;
+    private final String baseUrl;
+
+    public ImageStorageService(@Value("${rental.upload.dir:src/upload}") String uploadDir,
+                               @Value("${rental.images.base-url:http://localhost:3001/api/images/}") String baseUrl) throws IOException {
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+        Files.createDirectories(this.uploadDir);
+    }
+
+    /**
+     * Enregistre une image envoyée en multipart.
+     * @param file le fichier reçu.
+     * @return le nom sous lequel l'image est servie.
+     * @throws InvalidImageException si l'extension n'est pas celle d'une image acceptée.
+     */
+    public String store(MultipartFile file) throws IOException {
+        String extension = extension(file.getOriginalFilename());
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(Channels.newChannel(inputStream), extension);
+        }
+    }
+
+    /**
+     * Recopie un flux sur disque en calculant son empreinte, puis le range sous son nom définitif.
+     * @param source le contenu de l'image.
+     * @param extension l'extension normalisée de l'image.
+     * @return le nom sous lequel l'image est servie.
+     */
+    public String store(ReadableByteChannel source, String extension) throws IOException {
+        MessageDigest sha256 = sha256();
+        Path temporaire = Files.createTempFile(uploadDir, ".upload-", ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(TAILLE_BLOC);
+            try (FileChannel destination = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    sha256.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        destination.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            return moveToStore(temporaire, HexFormat.of().formatHex(sha256.digest()), extension);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /**
+     * Range un fichier déjà écrit sous &lt;empreinte&gt;.&lt;extension&gt; ; s'il existe déjà, le contenu est identique.
+     * Le fichier doit se trouver sur le même système de fichiers que le répertoire d'upload.
+     * @return le nom sous lequel l'image est servie.
+     */
+    public String moveToStore(Path fichier, String empreinte, String extension) throws IOException {
+        String nom = empreinte + "." + extension;
+        Path cible = pathOf(empreinte, nom);
+        if (!Files.exists(cible)) {
+            Files.createDirectories(cible.getParent());
+            try {
+                Files.move(fichier, cible, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Envoi concurrent du même contenu : la copie déjà présente convient
+            }
+        }
+        return nom;
+    }
+
+    /**
+     * Répertoire de travail (fichiers partiels, etc.) situé dans le répertoire d'upload,
+     * afin que le déplacement final vers le stockage reste atomique.
+     * @param nom le nom du sous-répertoire.
+     */
+    public Path workDirectory(String nom) throws IOException {
+        return Files.createDirectories(uploadDir.resolve("." + nom));
+    }
+
+    /**
+     * Indique si une référence désigne une image adressée par contenu effectivement stockée.
+     */
+    public boolean exists(String nom) {
+        return isContentAddressed(nom) && resolve(nom).filter(Files::isRegularFile).isPresent();
+    }
+
+    /**
+     * Retrouve le fichier d'une image à partir de son nom public.
+     * Les anciens noms (antérieurs au stockage par contenu) sont cherchés à la racine du répertoire.
+     * @param nom le nom de l'image.
+     * @return le chemin du fichier, ou vide si le nom sort du répertoire d'upload.
+     */
+    public Optional<Path> resolve(String nom) {
+        Matcher matcher = NOM_ADRESSE_PAR_CONTENU.matcher(nom);
+        if (matcher.matches()) {
+            return Optional.of(pathOf(matcher.group(1), nom));
+        }
+        Path chemin = uploadDir.resolve(nom).normalize();
+        return chemin.getParent().equals(uploadDir) ? Optional.of(chemin) : Optional.empty();
+    }
+
+    /**
+     * Chemin d'une image dérivée (miniature) d'une image adressée par contenu, rangée à côté de l'original.
+     * @param nom le nom de l'image originale.
+     * @param largeur la largeur de la miniature.
+     * @return le chemin de la miniature (existante ou non), ou vide si l'image n'est pas adressée par contenu.
+     */
+    public Optional<Path> derivativePath(String nom, int largeur) {
+        Matcher matcher = NOM_ADRESSE_PAR_CONTENU.matcher(nom);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        String empreinte = matcher.group(1);
+        return Optional.of(pathOf(empreinte, empreinte + "_w" + largeur + "." + matcher.group(2)));
+    }
+
+    /**
+     * Indique si le nom désigne une image adressée par contenu, donc immuable.
+     */
+    public boolean isContentAddressed(String nom) {
+        return NOM_ADRESSE_PAR_CONTENU.matcher(nom).matches();
+    }
+
+    public String urlOf(String nom) {
+        return baseUrl + nom;
+    }
+
+    /**
+     * Normalise et valide l'extension d'un nom de fichier.
+     * @throws InvalidImageException si l'extension n'est pas celle d'une image acceptée.
+     */
+    public String extension(String nomFichier) {
+        int point = nomFichier == null ? -1 : nomFichier.lastIndexOf('.');
+        String extension = point < 0 ? "" : nomFichier.substring(point + 1).toLowerCase(Locale.ROOT);
+        if (extension.equals("jpeg")) {
+            extension = "jpg";
+        }
+        if (!EXTENSIONS.contains(extension)) {
+            throw new InvalidImageException("Format d'image non accepté : " + nomFichier);
+        }
+        return extension;
+    }
+
+    private Path pathOf(String empreinte, String nom) {
+        return uploadDir.resolve(empreinte.substring(0, 2)).resolve(empreinte.substring(2, 4)).resolve(nom);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
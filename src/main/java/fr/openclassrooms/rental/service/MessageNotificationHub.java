@@ -0,0 +1,271 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.dto.MessageDTO;
+import fr.openclassrooms.rental.entite.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Diffusion en temps réel (Server-Sent Events) des nouveaux messages au propriétaire de la location visée.
+ * Une connexion SSE inactive n'occupe aucun thread (requête asynchrone) ; les envois sont faits par des
+ * threads virtuels, un seul à la fois par abonné. Chaque abonné a un tampon borné : un client trop lent
+ * pour vider son tampon est déconnecté plutôt que de ralentir la publication. Un commentaire SSE est envoyé
+ * périodiquement pour maintenir la connexion et détecter les clients partis.
+ */
+@Service
+public class MessageNotificationHub implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageNotificationHub.class);
+
+    private final int bufferSize;
+    private final int maxReplay;
+    private final Duration timeout;
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder publishedMessages = new LongAdder();
+    private final LongAdder evictedSubscribers = new LongAdder();
+
+    public MessageNotificationHub(@Value("${rental.messages.sse.buffer-size:100}") int bufferSize,
+                                  @Value("${rental.messages.sse.max-replay:1000}") int maxReplay,
+                                  @Value("${rental.messages.sse.timeout:PT30M}") Duration timeout) {
+        this.bufferSize = bufferSize;
+        this.maxReplay = maxReplay;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Ouvre un flux pour un propriétaire.
+     * L'abonné est enregistré avant la lecture des messages manqués : un message enregistré pendant cette lecture
+     * est reçu par la diffusion s'il n'est pas dans la reprise, et n'est envoyé qu'une fois s'il est dans les deux.
+     * Au-delà de max-replay messages manqués, rien n'est rejoué : un événement "resync" demande au client
+     * de recharger sa boîte de réception (GET /messages/inbox).
+     * @param ownerId l'utilisateur connecté.
+     * @param lastEventId l'id du dernier message reçu (Last-Event-ID), ou null pour une première connexion.
+     * @param missedAfter lecture d'une page de messages manqués (après un id, au plus n), du plus ancien au plus récent.
+     */
+    public SseEmitter subscribe(Integer ownerId, Integer lastEventId,
+                                BiFunction<Integer, Integer, List<MessageDTO>> missedAfter) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(ownerId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        // Fin normale du flux à l'expiration : le client se reconnecte avec Last-Event-ID
+        emitter.onTimeout(() -> {
+            remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(erreur -> remove(subscriber));
+        // Ajout et retrait sous le verrou de la clé : un ensemble vidé ne peut pas être retiré pendant un ajout
+        subscribers.compute(ownerId, (cle, abonnes) -> {
+            Set<Subscriber> ensemble = abonnes == null ? ConcurrentHashMap.newKeySet() : abonnes;
+            ensemble.add(subscriber);
+            return ensemble;
+        });
+        if (lastEventId != null) {
+            try {
+                replay(subscriber, lastEventId, missedAfter);
+            } catch (RuntimeException e) {
+                remove(subscriber);
+                throw e;
+            }
+        }
+        // Les envois commencent une fois la reprise lue : messages manqués d'abord, puis diffusion
+        subscriber.replaying = false;
+        subscriber.schedule();
+        return emitter;
+    }
+
+    // Messages manqués lus par pages, jusqu'à max-replay
+    private void replay(Subscriber subscriber, Integer lastEventId,
+                        BiFunction<Integer, Integer, List<MessageDTO>> missedAfter) {
+        Integer apres = lastEventId;
+        while (true) {
+            int limite = Math.min(bufferSize, maxReplay + 1 - subscriber.replay.size());
+            List<MessageDTO> page = missedAfter.apply(apres, limite);
+            for (MessageDTO messageDTO : page) {
+                subscriber.replay.add(messageDTO);
+                subscriber.replayedIds.add(messageDTO.id());
+            }
+            if (subscriber.replay.size() > maxReplay) {
+                // Reprise trop longue : le client recharge sa boîte de réception
+                subscriber.replay.clear();
+                subscriber.replayedIds.clear();
+                subscriber.resync = true;
+                return;
+            }
+            if (page.size() < limite) {
+                return;
+            }
+            apres = page.get(page.size() - 1).id();
+        }
+    }
+
+    /**
+     * Diffuse un message enregistré aux abonnés du propriétaire de la location.
+     * N'attend jamais un client : le message est seulement déposé dans le tampon de chaque abonné.
+     */
+    public void publish(Message message) {
+        if (message.getId() == null || message.getOwner_id() == null) {
+            return;
+        }
+        // Propriétaire recopié sur le message à l'envoi : aucune lecture de la location ici
+        Set<Subscriber> abonnes = subscribers.get(message.getOwner_id());
+        if (abonnes == null || abonnes.isEmpty()) {
+            return;
+        }
+        MessageDTO messageDTO = new MessageDTO(message.getId(), message.getMessage(), message.getUser_id(), message.getRental_id());
+        publishedMessages.increment();
+        for (Subscriber subscriber : abonnes) {
+            if (subscriber.buffer.offer(messageDTO)) {
+                subscriber.schedule();
+            } else {
+                evict(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Planifie un commentaire de maintien de connexion pour chaque abonné.
+     */
+    @Scheduled(fixedRateString = "${rental.messages.sse.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        for (Set<Subscriber> abonnes : subscribers.values()) {
+            for (Subscriber subscriber : abonnes) {
+                subscriber.heartbeatDue = true;
+                subscriber.schedule();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public long getPublishedMessages() {
+        return publishedMessages.sum();
+    }
+
+    public long getEvictedSubscribers() {
+        return evictedSubscribers.sum();
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            evictedSubscribers.increment();
+            log.info("Abonné SSE {} déconnecté : tampon de {} messages plein", subscriber.ownerId, bufferSize);
+            subscriber.emitter.complete();
+        }
+    }
+
+    // Renvoie true si l'abonné était encore actif
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.active.compareAndSet(true, false)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.ownerId, (cle, abonnes) -> {
+            abonnes.remove(subscriber);
+            return abonnes.isEmpty() ? null : abonnes;
+        });
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.values().forEach(abonnes -> abonnes.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+        executor.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final Integer ownerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<MessageDTO> buffer = new ArrayBlockingQueue<>(bufferSize);
+        // Un seul envoi en cours par abonné : les événements partent dans l'ordre
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private volatile boolean heartbeatDue;
+        // Messages manqués, remplis avant la fin de la reprise puis lus par les seuls envois
+        private final Deque<MessageDTO> replay = new ArrayDeque<>();
+        private final Set<Integer> replayedIds = new HashSet<>();
+        private boolean resync;
+        // Aucun envoi tant que la reprise n'est pas lue : la diffusion est seulement mise en tampon
+        private volatile boolean replaying = true;
+
+        private Subscriber(Integer ownerId, SseEmitter emitter) {
+            this.ownerId = ownerId;
+            this.emitter = emitter;
+        }
+
+        private void schedule() {
+            if (replaying) {
+                return;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                MessageDTO messageDTO;
+                while ((messageDTO = replay.poll()) != null) {
+                    send(messageDTO);
+                }
+                if (resync) {
+                    resync = false;
+                    emitter.send(SseEmitter.event().name("resync").data(""));
+                }
+                while ((messageDTO = buffer.poll()) != null) {
+                    // Message diffusé pendant la reprise et déjà envoyé par elle
+                    if (!replayedIds.contains(messageDTO.id())) {
+                        send(messageDTO);
+                    }
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("ping"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client parti ou flux déjà terminé : le conteneur clôt la requête
+                remove(this);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            // Un message a pu arriver entre la fin de la boucle et la libération du drapeau
+            if (!buffer.isEmpty() || heartbeatDue) {
+                schedule();
+            }
+        }
+
+        private void send(MessageDTO messageDTO) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(messageDTO.id()))
+                    .name("message")
+                    .data(messageDTO, MediaType.APPLICATION_JSON));
+        }
+    }
+}
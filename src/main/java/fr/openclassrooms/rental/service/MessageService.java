@@ -1,19 +1,62 @@
 package fr.openclassrooms.rental.service;
 
+import fr.openclassrooms.rental.dto.MessageDTO;
+import fr.openclassrooms.rental.dto.RentalDTO;
 import fr.openclassrooms.rental.entite.Message;
 import fr.openclassrooms.rental.repository.MessageRepository;
+import fr.openclassrooms.rental.repository.RentalRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Optional;
+
+// Latence de chaque méthode publique : rental.service{class, method}
+@Timed("rental.service")
 @Service
 @AllArgsConstructor
 public class MessageService {
     MessageRepository messageRepository;
+    MessageWriteBehind messageWriteBehind;
+    RentalRepository rentalRepository;
+    MessageNotificationHub messageNotificationHub;
+    RentalService rentalService;
     public void envoyerMessage(Message message){
         Message messageEnvoye=new Message();
         messageEnvoye.setMessage(message.getMessage());
         messageEnvoye.setUser_id(message.getUser_id());
         messageEnvoye.setRental_id(message.getRental_id());
-        this.messageRepository.save(messageEnvoye);
+        // Propriétaire lu via le cache des locations, recopié sur le message pour la boîte de réception
+        if (message.getRental_id() != null) {
+            messageEnvoye.setOwner_id(rentalService.findRentalDtoById(message.getRental_id())
+                    .map(RentalDTO::getOwner_id)
+                    .orElse(null));
+        }
+        // En mode write-behind, le message est enregistré par lot en arrière-plan
+        if (messageWriteBehind.isEnabled()) {
+            messageWriteBehind.submit(messageEnvoye);
+            return;
+        }
+        // Diffusion au propriétaire une fois le message enregistré
+        messageNotificationHub.publish(this.messageRepository.save(messageEnvoye));
+    }
+
+    // Le curseur est l'id du dernier message de la page précédente ; sans curseur, on part du plus récent
+    public List<MessageDTO> getRentalMessagesPage(Integer rentalId, Integer beforeId, int limit) {
+        return messageRepository.findDtoPageByRental(rentalId, beforeId == null ? Integer.MAX_VALUE : beforeId, Limit.of(limit));
+    }
+
+    public List<MessageDTO> getInboxPage(Integer ownerId, Integer beforeId, int limit) {
+        return messageRepository.findDtoPageByOwner(ownerId, beforeId == null ? Integer.MAX_VALUE : beforeId, Limit.of(limit));
+    }
+
+    public List<MessageDTO> getInboxAfter(Integer ownerId, Integer afterId, int limit) {
+        return messageRepository.findDtoByOwnerAfter(ownerId, afterId, Limit.of(limit));
+    }
+
+    public Optional<Integer> findRentalOwnerId(Integer rentalId) {
+        return rentalRepository.findOwnerIdById(rentalId);
     }
 }
@@ -0,0 +1,233 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.entite.Message;
+import fr.openclassrooms.rental.exception.MessageQueueFullException;
+import fr.openclassrooms.rental.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Écriture différée des messages.
+ * En mode write-behind, les messages sont placés dans une file bornée et un thread d'écriture les
+ * enregistre par lots (une transaction et un lot JDBC par lot de messages) au lieu d'un INSERT par requête.
+ * Quand la file est pleine, l'envoi attend une place (BLOCK, dans la limite d'un délai) ou est refusé
+ * immédiatement (REJECT). Si un lot échoue, ses messages sont enregistrés un par un : seul un message
+ * en erreur est perdu, et il est journalisé. À l'arrêt, les messages en attente sont enregistrés si flush-on-shutdown est actif ;
+ * un message soumis une fois l'arrêt commencé est refusé (503) plutôt qu'accepté puis perdu.
+ * La file, les messages acceptés, refusés, écrits ou abandonnés et la taille des lots sont publiés sous rental.messages.ingestion.
+ * En mode sync (par défaut), les messages sont enregistrés immédiatement, dans la requête.
+ */
+@Component
+public class MessageWriteBehind implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehind.class);
+    // Nombre d'essais d'un message après l'échec de son lot, en cas d'erreur transitoire (verrou, connexion)
+    private static final int MAX_TENTATIVES = 3;
+
+    public enum Mode { SYNC, WRITE_BEHIND }
+
+    public enum Overflow { BLOCK, REJECT }
+
+    private final MessageRepository messageRepository;
+    private final MessageNotificationHub messageNotificationHub;
+    private final boolean enabled;
+    private final Overflow overflow;
+    private final Duration blockTimeout;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final boolean flushOnShutdown;
+    private final BlockingQueue<Message> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Les envois tiennent le verrou partagé : l'arrêt, exclusif, attend ceux en cours puis refuse les suivants
+    private final ReadWriteLock arret = new ReentrantReadWriteLock();
+
+    private final Counter acceptedMessages;
+    private final Counter rejectedMessages;
+    private final Counter writtenMessages;
+    private final Counter failedMessages;
+    private final DistributionSummary batchSizes;
+
+    public MessageWriteBehind(MessageRepository messageRepository, MessageNotificationHub messageNotificationHub,
+                              @Value("${rental.messages.ingestion.mode:sync}") String mode,
+                              @Value("${rental.messages.ingestion.queue-capacity:10000}") int queueCapacity,
+                              @Value("${rental.messages.ingestion.batch-size:100}") int batchSize,
+                              @Value("${rental.messages.ingestion.flush-interval:PT0.2S}") Duration flushInterval,
+                              @Value("${rental.messages.ingestion.overflow:block}") String overflow,
+                              @Value("${rental.messages.ingestion.block-timeout:PT1S}") Duration blockTimeout,
+                              @Value("${rental.messages.ingestion.flush-on-shutdown:true}") boolean flushOnShutdown,
+                              MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.messageNotificationHub = messageNotificationHub;
+        this.enabled = Mode.valueOf(mode.trim().replace('-', '_').toUpperCase(Locale.ROOT)) == Mode.WRITE_BEHIND;
+        this.overflow = Overflow.valueOf(overflow.trim().toUpperCase(Locale.ROOT));
+        this.blockTimeout = blockTimeout;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.flushOnShutdown = flushOnShutdown;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("rental.messages.ingestion.queue", queue, BlockingQueue::size)
+                .description("Messages en attente d'écriture (write-behind)")
+                .register(meterRegistry);
+        this.acceptedMessages = ingestionCounter(meterRegistry, "accepted");
+        this.rejectedMessages = ingestionCounter(meterRegistry, "rejected");
+        this.writtenMessages = ingestionCounter(meterRegistry, "written");
+        this.failedMessages = ingestionCounter(meterRegistry, "failed");
+        this.batchSizes = DistributionSummary.builder("rental.messages.ingestion.batch.size")
+                .description("Nombre de messages par lot enregistré")
+                .register(meterRegistry);
+        if (enabled) {
+            writer = new Thread(this::run, "message-writer");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Écriture différée des messages active (lots de {}, file de {})", batchSize, queueCapacity);
+        } else {
+            writer = null;
+        }
+    }
+
+    private static Counter ingestionCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rental.messages.ingestion")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Place un message dans la file d'écriture.
+     * @throws MessageQueueFullException si la file est pleine (REJECT), n'a pas libéré de place à temps (BLOCK)
+     * ou si l'arrêt a commencé.
+     */
+    public void submit(Message message) {
+        boolean accepted;
+        arret.readLock().lock();
+        try {
+            accepted = running && (overflow == Overflow.REJECT
+                    ? queue.offer(message)
+                    : queue.offer(message, blockTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        } finally {
+            arret.readLock().unlock();
+        }
+        if (!accepted) {
+            rejectedMessages.increment();
+            throw new MessageQueueFullException(running
+                    ? "File des messages pleine, réessayez plus tard"
+                    : "Arrêt en cours, réessayez plus tard");
+        }
+        acceptedMessages.increment();
+    }
+
+    private void run() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Message first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Message> batch) {
+        try {
+            // saveAll : une seule transaction, insertions regroupées selon hibernate.jdbc.batch_size
+            messageRepository.saveAll(batch);
+            writtenMessages.increment(batch.size());
+            batchSizes.record(batch.size());
+            log.debug("Lot de {} messages enregistré", batch.size());
+        } catch (RuntimeException e) {
+            // Un seul message invalide (location ou utilisateur supprimé) annule la transaction du lot :
+            // les messages sont alors enregistrés un par un pour ne perdre que les lignes en erreur
+            log.warn("Échec d'enregistrement d'un lot de {} messages, enregistrement un par un : {}", batch.size(), e.getMessage());
+            batch.forEach(this::writeOne);
+            return;
+        }
+        // Diffusion après validation de la transaction du lot
+        batch.forEach(messageNotificationHub::publish);
+    }
+
+    private void writeOne(Message message) {
+        for (int tentative = 1; ; tentative++) {
+            // L'id tiré de la séquence pendant le lot annulé n'a pas été enregistré : le message redevient nouveau
+            message.setId(null);
+            try {
+                messageNotificationHub.publish(messageRepository.save(message));
+                writtenMessages.increment();
+                return;
+            } catch (TransientDataAccessException e) {
+                if (tentative >= MAX_TENTATIVES) {
+                    drop(message, e);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                drop(message, e);
+                return;
+            }
+        }
+    }
+
+    private void drop(Message message, RuntimeException e) {
+        failedMessages.increment();
+        log.error("Message abandonné (user_id={}, rental_id={}) : {}", message.getUser_id(), message.getRental_id(), e.getMessage());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // Attend la fin des envois en cours : tout message accepté est alors dans la file, et les suivants sont refusés
+        arret.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            arret.writeLock().unlock();
+        }
+        // Pas d'interruption : le lot en cours d'écriture se termine, puis la boucle s'arrête au prochain poll
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (!flushOnShutdown) {
+            if (!queue.isEmpty()) {
+                log.warn("Arrêt : {} messages en attente abandonnés", queue.size());
+            }
+            return;
+        }
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+}
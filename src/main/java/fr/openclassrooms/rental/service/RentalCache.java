@@ -0,0 +1,82 @@
+package fr.openclassrooms.rental.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.openclassrooms.rental.dto.RentalDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache borné des locations lues par id.
+ * Les écritures locales (création, modification) y déposent la version à jour : une lecture
+ * sur ce nœud ne renvoie jamais une location périmée après une écriture.
+ * Le TTL borne la durée pendant laquelle une écriture faite par un autre nœud peut rester invisible.
+ * Succès, échecs, évictions et taille sont publiés sous le nom de cache "rentals" (cache_gets, cache_size...).
+ */
+@Component
+public class RentalCache {
+
+    private final boolean enabled;
+    private final Cache<Integer, RentalDTO> cache;
+
+    public RentalCache(@Value("${rental.rentals.cache.enabled:true}") boolean enabled,
+                       @Value("${rental.rentals.cache.maximum-size:10000}") long maximumSize,
+                       @Value("${rental.rentals.cache.ttl:PT10M}") Duration ttl,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rentals");
+    }
+
+    /**
+     * Renvoie la location en cache, ou la charge puis la met en cache.
+     * Les locations inexistantes ne sont pas mises en cache.
+     * @param id l'id de la location.
+     * @param loader le chargement en base en cas d'absence.
+     */
+    public Optional<RentalDTO> get(Integer id, Function<Integer, Optional<RentalDTO>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // Chargement hors de Cache.get(key, loader) : celui-ci exécute le chargement sous le verrou
+        // (synchronized) de ConcurrentHashMap.compute, ce qui épinglerait un thread virtuel pendant la requête SQL.
+        // Deux lectures simultanées d'une même location absente peuvent donc la charger deux fois.
+        RentalDTO cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<RentalDTO> loaded = loader.apply(id);
+        if (loaded.isEmpty()) {
+            return loaded;
+        }
+        // Publication par putIfAbsent : si une écriture locale a déposé sa version pendant le chargement,
+        // c'est elle qui est conservée et renvoyée, jamais la ligne lue avant la modification.
+        RentalDTO present = cache.asMap().putIfAbsent(id, loaded.get());
+        return present != null ? Optional.of(present) : loaded;
+    }
+
+    public Optional<RentalDTO> getIfPresent(Integer id) {
+        return enabled ? Optional.ofNullable(cache.getIfPresent(id)) : Optional.empty();
+    }
+
+    // Écriture directe de la version à jour après une création ou une modification
+    public void put(RentalDTO rentalDTO) {
+        if (enabled) {
+            cache.put(rentalDTO.getId(), rentalDTO);
+        }
+    }
+
+    public void invalidate(Integer id) {
+        cache.invalidate(id);
+    }
+}
@@ -0,0 +1,380 @@
+package fr.openclassrooms.rental.service;
+
+import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.dto.RentalFilter;
+import fr.openclassrooms.rental.repository.RentalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Index inversé en mémoire des mots du nom et de la description des locations.
+ * Les mots sont découpés, mis en minuscules et débarrassés de leurs accents ("Médiathèque" et "mediatheque"
+ * se confondent) ; les mots vides du français sont ignorés. Chaque mot pointe vers une liste triée d'ids
+ * de locations (tableaux de primitives, sans objet par occurrence). Les résultats sont classés par BM25,
+ * les mots du nom comptant davantage que ceux de la description.
+ * L'index est construit au démarrage puis tenu à jour par les créations et modifications faites sur ce nœud.
+ * Il lit price et surface en BigDecimal : la conversion de ces colonnes (RentalNumericColumnsMigration) doit être faite.
+ */
+@Component
+@DependsOn("rentalNumericColumnsMigration")
+public class RentalSearchIndex implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(RentalSearchIndex.class);
+    private static final Pattern SEPARATEURS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern DIACRITIQUES = Pattern.compile("\\p{M}+");
+    private static final Set<String> MOTS_VIDES = Set.of(
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "en", "est", "et", "il", "la", "le", "les",
+            "leur", "mais", "ou", "par", "pas", "pour", "qui", "que", "sa", "se", "ses", "son", "sur", "un", "une", "vos", "votre");
+    // Paramètres usuels de BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int POIDS_NOM = 3;
+    private static final int FREQUENCE_MAX = 255;
+
+    private final RentalRepository rentalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> termes = new HashMap<>();
+    // Données par location, dans des tableaux indexés par id (les ids sont attribués séquentiellement)
+    private Postings[][] postingsParLocation = new Postings[0][];
+    private int[] longueurs = new int[0];
+    private double[] prix = new double[0];
+    private double[] surfaces = new double[0];
+    private int locations;
+    private long longueurTotale;
+
+    public RentalSearchIndex(RentalRepository rentalRepository, PlatformTransactionManager transactionManager,
+                             @Value("${rental.search.enabled:true}") boolean enabled) {
+        this.rentalRepository = rentalRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Construit l'index à partir de toutes les locations, avant l'ouverture du serveur HTTP.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long debut = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<RentalDTO> rentals = rentalRepository.streamAllDtos()) {
+                rentals.forEach(this::index);
+            }
+        });
+        log.info("Index de recherche construit : {} locations, {} mots en {} ms",
+                locations, termes.size(), (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    /**
+     * Ajoute ou remplace une location dans l'index.
+     */
+    public void index(RentalDTO rental) {
+        if (!enabled || rental.getId() == null) {
+            return;
+        }
+        Map<String, Integer> frequences = new LinkedHashMap<>();
+        tokenize(rental.getName()).forEach(terme -> frequences.merge(terme, POIDS_NOM, Integer::sum));
+        tokenize(rental.getDescription()).forEach(terme -> frequences.merge(terme, 1, Integer::sum));
+        int id = rental.getId();
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            Postings[] postings = new Postings[frequences.size()];
+            int longueur = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> entree : frequences.entrySet()) {
+                postings[i] = termes.computeIfAbsent(entree.getKey(), Postings::new);
+                postings[i].add(id, Math.min(entree.getValue(), FREQUENCE_MAX));
+                longueur += entree.getValue();
+                i++;
+            }
+            ensureCapacity(id);
+            postingsParLocation[id] = postings;
+            // Longueur au moins 1 : 0 signifie "absente de l'index"
+            longueurs[id] = Math.max(longueur, 1);
+            prix[id] = toDouble(rental.getPrice());
+            surfaces[id] = toDouble(rental.getSurface());
+            locations++;
+            longueurTotale += longueurs[id];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recherche les locations contenant au moins un des mots de la requête, les plus pertinentes d'abord.
+     * @param requete les mots recherchés.
+     * @param filter les filtres de prix et de surface.
+     * @param limit le nombre maximal de résultats.
+     * @return les ids des locations, par pertinence décroissante.
+     */
+    public List<Integer> search(String requete, RentalFilter filter, int limit) {
+        List<String> mots = tokenize(requete).distinct().toList();
+        if (mots.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Postings> listes = new ArrayList<>(mots.size());
+            for (String mot : mots) {
+                Postings postings = termes.get(mot);
+                if (postings != null) {
+                    listes.add(postings);
+                }
+            }
+            if (listes.isEmpty()) {
+                return List.of();
+            }
+            return topK(listes, filter, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getIndexedRentals() {
+        lock.readLock().lock();
+        try {
+            return locations;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return termes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Parcours simultané des listes triées (document par document) : chaque location candidate est notée
+    // une seule fois, sans table de scores intermédiaire ; seuls les limit meilleurs résultats sont gardés
+    private List<Integer> topK(List<Postings> listes, RentalFilter filter, int limit) {
+        int n = locations;
+        float longueurMoyenne = n == 0 ? 1 : (float) longueurTotale / n;
+        int termesRequete = listes.size();
+        int[][] ids = new int[termesRequete][];
+        byte[][] frequences = new byte[termesRequete][];
+        int[] tailles = new int[termesRequete];
+        float[] idf = new float[termesRequete];
+        int[] curseurs = new int[termesRequete];
+        for (int t = 0; t < termesRequete; t++) {
+            Postings postings = listes.get(t);
+            ids[t] = postings.ids;
+            frequences[t] = postings.frequences;
+            tailles[t] = postings.size;
+            idf[t] = (float) Math.log(1 + (n - postings.size + 0.5) / (postings.size + 0.5));
+        }
+        boolean filtre = filter != null && !filter.isEmpty();
+        boolean filtrePrix = filtre && (filter.minPrice() != null || filter.maxPrice() != null);
+        boolean filtreSurface = filtre && filter.minSurface() != null;
+        double prixMin = filtrePrix ? bound(filter.minPrice(), Double.NEGATIVE_INFINITY) : 0;
+        double prixMax = filtrePrix ? bound(filter.maxPrice(), Double.POSITIVE_INFINITY) : 0;
+        double surfaceMin = filtreSurface ? filter.minSurface().doubleValue() : 0;
+
+        // Tas minimal des meilleurs résultats, en tableaux parallèles : le moins bon est en tête
+        int[] meilleursIds = new int[limit];
+        float[] meilleursScores = new float[limit];
+        int retenus = 0;
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            for (int t = 0; t < termesRequete; t++) {
+                if (curseurs[t] < tailles[t] && ids[t][curseurs[t]] < id) {
+                    id = ids[t][curseurs[t]];
+                }
+            }
+            if (id == Integer.MAX_VALUE) {
+                break;
+            }
+            // Une valeur inconnue (NaN) échoue à toute comparaison : la location est écartée par le filtre
+            boolean retenu = (!filtrePrix || (prix[id] >= prixMin && prix[id] <= prixMax))
+                    && (!filtreSurface || surfaces[id] >= surfaceMin);
+            float normalisation = K1 * (1 - B + B * longueurs[id] / longueurMoyenne);
+            float score = 0;
+            for (int t = 0; t < termesRequete; t++) {
+                int position = curseurs[t];
+                if (position < tailles[t] && ids[t][position] == id) {
+                    float tf = frequences[t][position] & 0xFF;
+                    score += idf[t] * tf * (K1 + 1) / (tf + normalisation);
+                    curseurs[t] = position + 1;
+                }
+            }
+            if (!retenu) {
+                continue;
+            }
+            if (retenus < limit) {
+                meilleursIds[retenus] = id;
+                meilleursScores[retenus] = score;
+                siftUp(meilleursIds, meilleursScores, retenus++);
+            } else if (score > meilleursScores[0]) {
+                meilleursIds[0] = id;
+                meilleursScores[0] = score;
+                siftDown(meilleursIds, meilleursScores, retenus);
+            }
+        }
+        // Vidage du tas : du moins bon au meilleur, rangés depuis la fin
+        Integer[] resultat = new Integer[retenus];
+        for (int i = retenus - 1; i >= 0; i--) {
+            resultat[i] = meilleursIds[0];
+            meilleursIds[0] = meilleursIds[i];
+            meilleursScores[0] = meilleursScores[i];
+            siftDown(meilleursIds, meilleursScores, i);
+        }
+        return Arrays.asList(resultat);
+    }
+
+    private static void siftUp(int[] ids, float[] scores, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (scores[parent] <= scores[position]) {
+                return;
+            }
+            swap(ids, scores, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, float[] scores, int taille) {
+        int position = 0;
+        while (true) {
+            int enfant = 2 * position + 1;
+            if (enfant >= taille) {
+                return;
+            }
+            if (enfant + 1 < taille && scores[enfant + 1] < scores[enfant]) {
+                enfant++;
+            }
+            if (scores[position] <= scores[enfant]) {
+                return;
+            }
+            swap(ids, scores, position, enfant);
+            position = enfant;
+        }
+    }
+
+    private static void swap(int[] ids, float[] scores, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static double toDouble(BigDecimal valeur) {
+        return valeur == null ? Double.NaN : valeur.doubleValue();
+    }
+
+    private static double bound(BigDecimal valeur, double defaut) {
+        return valeur == null ? defaut : valeur.doubleValue();
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= longueurs.length) {
+            int taille = Math.max(id + 1, longueurs.length + (longueurs.length >> 1));
+            postingsParLocation = Arrays.copyOf(postingsParLocation, taille);
+            longueurs = Arrays.copyOf(longueurs, taille);
+            prix = Arrays.copyOf(prix, taille);
+            surfaces = Arrays.copyOf(surfaces, taille);
+        }
+    }
+
+    private void removeLocked(int id) {
+        if (id >= longueurs.length || longueurs[id] == 0) {
+            return;
+        }
+        for (Postings postings : postingsParLocation[id]) {
+            postings.remove(id);
+            // Un mot qui ne désigne plus aucune location est oublié
+            if (postings.size == 0) {
+                termes.remove(postings.terme);
+            }
+        }
+        longueurTotale -= longueurs[id];
+        locations--;
+        longueurs[id] = 0;
+        postingsParLocation[id] = null;
+    }
+
+    /**
+     * Découpe un texte en mots normalisés : minuscules, sans accents, sans mots vides ni lettres isolées.
+     */
+    static Stream<String> tokenize(String texte) {
+        if (texte == null || texte.isBlank()) {
+            return Stream.empty();
+        }
+        String sansAccents = DIACRITIQUES.matcher(Normalizer.normalize(texte, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATEURS.splitAsStream(sansAccents.toLowerCase(Locale.ROOT))
+                .filter(mot -> mot.length() > 1 && !MOTS_VIDES.contains(mot));
+    }
+
+    // Liste triée des ids des locations contenant un mot, avec la fréquence (pondérée) du mot dans chacune
+    private static final class Postings {
+        private final String terme;
+        private int[] ids = new int[4];
+        private byte[] frequences = new byte[4];
+        private int size;
+
+        private Postings(String terme) {
+            this.terme = terme;
+        }
+
+        private void add(int id, int frequence) {
+            // Les nouvelles locations ont les plus grands ids : l'ajout se fait presque toujours en fin de liste
+            int position = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                frequences[position] = (byte) frequence;
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+                frequences = Arrays.copyOf(frequences, ids.length);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(frequences, position, frequences, position + 1, size - position);
+            ids[position] = id;
+            frequences[position] = (byte) frequence;
+            size++;
+        }
+
+        private void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(frequences, position + 1, frequences, position, size - position - 1);
+            size--;
+        }
+    }
+}
@@ -1,23 +1,43 @@
 package fr.openclassrooms.rental.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import fr.openclassrooms.rental.dto.RentalDTO;
+import fr.openclassrooms.rental.dto.RentalFilter;
+import fr.openclassrooms.rental.dto.RentalSort;
+import fr.openclassrooms.rental.dto.RentalsVersion;
 import fr.openclassrooms.rental.entite.Rental;
 import fr.openclassrooms.rental.entite.Utilisateur;
 import fr.openclassrooms.rental.repository.RentalRepository;
 import fr.openclassrooms.rental.repository.UtilisateurRepository;
 import jakarta.persistence.EntityNotFoundException;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// Latence de chaque méthode publique : rental.service{class, method}
+@Timed("rental.service")
 @AllArgsConstructor
 @Service
 public class RentalService {
 
+    // Taille des pages lues par GET /rentals/stream, une transaction chacune
+    static final int EXPORT_PAGE_SIZE = 500;
+
     private RentalRepository rentalRepository;
     private UtilisateurRepository utilisateurRepository;
+    private RentalCache rentalCache;
+    private RentalSearchIndex rentalSearchIndex;
 
     public Rental createRentalForUser(Integer idUtilisateur, Rental rental) {
 
@@ -26,11 +46,57 @@ public class RentalService {
         rental.setUtilisateur(utilisateur);
         rental.setCreated_at(LocalDateTime.now());
         rental.setUpdated_at(LocalDateTime.now());
-        return rentalRepository.save(rental);
+        Rental savedRental = rentalRepository.save(rental);
+        RentalDTO rentalDTO = convertToDTO(savedRental);
+        rentalCache.put(rentalDTO);
+        rentalSearchIndex.index(rentalDTO);
+        return savedRental;
+    }
+
+    /**
+     * Recherche plein texte dans le nom et la description des locations, via l'index en mémoire.
+     * @param query les mots recherchés.
+     * @param filter les filtres par intervalle.
+     * @param limit le nombre maximal de locations à renvoyer.
+     * @return les locations, les plus pertinentes d'abord.
+     */
+    public List<RentalDTO> searchRentals(String query, RentalFilter filter, int limit) {
+        List<Integer> ids = rentalSearchIndex.search(query, filter, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // Une seule requête pour la page, remise ensuite dans l'ordre de pertinence
+        Map<Integer, RentalDTO> rentals = rentalRepository.findDtosByIds(ids).stream()
+                .collect(Collectors.toMap(RentalDTO::getId, Function.identity()));
+        return ids.stream().map(rentals::get).filter(Objects::nonNull).toList();
     }
 
-    public List<Rental> getAllRentals (){
-        return rentalRepository.findAll();
+    /**
+     * Renvoie une page de locations triées par id, à partir d'un curseur.
+     * @param afterId l'id de la dernière location déjà lue (null pour la première page).
+     * @param limit le nombre maximal de locations à renvoyer.
+     */
+    public List<RentalDTO> getRentalsPage(Integer afterId, int limit) {
+        return getRentalsPage(RentalFilter.NONE, RentalSort.ID, null, afterId, limit);
+    }
+
+    /**
+     * Renvoie une page de locations filtrées et triées en base, à partir d'un curseur.
+     * @param filter les filtres par intervalle.
+     * @param sort l'ordre des locations.
+     * @param afterPrice le prix de la dernière location déjà lue (tri par prix, null pour la première page).
+     * @param afterId l'id de la dernière location déjà lue (null pour la première page).
+     * @param limit le nombre maximal de locations à renvoyer.
+     */
+    public List<RentalDTO> getRentalsPage(RentalFilter filter, RentalSort sort, BigDecimal afterPrice, Integer afterId, int limit) {
+        return switch (sort) {
+            case ID -> rentalRepository.findDtoPageAfter(afterId == null ? 0 : afterId,
+                    filter.minPrice(), filter.maxPrice(), filter.minSurface(), Limit.of(limit));
+            case PRICE_ASC -> rentalRepository.findDtoPageByPriceAsc(afterPrice, afterId == null ? 0 : afterId,
+                    filter.minPrice(), filter.maxPrice(), filter.minSurface(), Limit.of(limit));
+            case PRICE_DESC -> rentalRepository.findDtoPageByPriceDesc(afterPrice, afterId == null ? Integer.MAX_VALUE : afterId,
+                    filter.minPrice(), filter.maxPrice(), filter.minSurface(), Limit.of(limit));
+        };
     }
 
     public RentalDTO convertToDTO(Rental rental) {
@@ -48,9 +114,55 @@ public class RentalService {
         return rentalDTO;
     }
 
-    public Rental getRentalById(Integer id) {
-        return rentalRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Rental not found with id: " + id));
+    public RentalsVersion getCatalogueVersion() {
+        return rentalRepository.findCatalogueVersion();
+    }
+
+    /**
+     * Date de dernière modification d'une location, sans la charger.
+     * @param id l'id de la location.
+     * @return la date, ou vide si la location n'existe pas.
+     */
+    public Optional<LocalDateTime> findRentalUpdatedAt(Integer id) {
+        Optional<RentalDTO> cached = rentalCache.getIfPresent(id);
+        if (cached.isPresent()) {
+            return cached.map(RentalDTO::getUpdated_at);
+        }
+        return rentalRepository.findUpdatedAtById(id);
+    }
+
+    /**
+     * Écrit le catalogue complet au format {"rentals":[...]} par pages de EXPORT_PAGE_SIZE locations (curseur sur l'id).
+     * Chaque page est lue dans sa propre transaction, courte : la connexion est rendue au pool avant l'écriture
+     * vers le client, dont la lenteur n'immobilise donc pas le pool. La mémoire utilisée reste celle d'une page.
+     * Le catalogue n'est pas figé : une location créée pendant l'envoi y figure si son id suit la page en cours.
+     * @param generator le générateur JSON, branché sur la réponse HTTP.
+     */
+    public void writeAllRentals(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("rentals");
+        Integer afterId = 0;
+        List<RentalDTO> page;
+        do {
+            page = rentalRepository.findDtoPageAfter(afterId, null, null, null, Limit.of(EXPORT_PAGE_SIZE));
+            for (RentalDTO rentalDTO : page) {
+                generator.writeObject(rentalDTO);
+            }
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Recherche une location, directement projetée en DTO, en passant par le cache.
+     * @param id l'id de la location.
+     * @return la location, ou vide si elle n'existe pas.
+     */
+    public Optional<RentalDTO> findRentalDtoById(Integer id) {
+        return rentalCache.get(id, rentalRepository::findDtoById);
     }
 
 
@@ -76,7 +188,14 @@ public class RentalService {
             rental.setDescription(updateRental.getDescription());
         }
 
-        // Sauvegarde de l'entité mise à jour
-        return rentalRepository.save(rental);
+        // La date de modification sert de version (ETag / Last-Modified)
+        rental.setUpdated_at(LocalDateTime.now());
+
+        // Sauvegarde de l'entité mise à jour, puis mise à jour du cache de lecture et de l'index de recherche
+        Rental savedRental = rentalRepository.save(rental);
+        RentalDTO rentalDTO = convertToDTO(savedRental);
+        rentalCache.put(rentalDTO);
+        rentalSearchIndex.index(rentalDTO);
+        return savedRental;
     }
 }
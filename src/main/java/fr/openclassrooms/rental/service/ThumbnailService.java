@@ -0,0 +1,178 @@
+package fr.openclassrooms.rental.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génération asynchrone des miniatures des images de location.
+ * Les miniatures sont calculées sur un pool dédié et borné, jamais sur le thread de la requête ;
+ * tant qu'une miniature n'existe pas, l'image originale est servie à sa place.
+ * Si la file est pleine, la génération est abandonnée : l'original reste servi.
+ * Les dimensions annoncées par l'en-tête de l'image sont lues avant le décodage : une image envoyée par
+ * un client qui dépasse max-pixels (quelques octets compressés peuvent annoncer des milliards de pixels)
+ * n'est jamais décodée en mémoire.
+ */
+@Service
+public class ThumbnailService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private final ImageStorageService imageStorageService;
+    private final List<Integer> largeurs;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    public ThumbnailService(ImageStorageService imageStorageService,
+                            @Value("${rental.thumbnails.sizes:160,320,640}") List<Integer> largeurs,
+                            @Value("${rental.thumbnails.pool-size:2}") int poolSize,
+                            @Value("${rental.thumbnails.queue-capacity:100}") int queueCapacity,
+                            @Value("${rental.thumbnails.max-pixels:40000000}") long maxPixels) {
+        this.imageStorageService = imageStorageService;
+        this.largeurs = List.copyOf(largeurs);
+        this.maxPixels = maxPixels;
+        AtomicInteger compteur = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + compteur.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Planifie la génération des miniatures d'une image, sans attendre.
+     * @param nom le nom (adressé par contenu) de l'image originale.
+     */
+    public void generateAsync(String nom) {
+        if (!imageStorageService.isContentAddressed(nom)) {
+            return;
+        }
+        try {
+            executor.execute(() -> generate(nom));
+        } catch (RejectedExecutionException e) {
+            log.warn("File des miniatures pleine, miniatures non générées pour {}", nom);
+        }
+    }
+
+    /**
+     * Renvoie la miniature d'une image si elle existe déjà.
+     * @param nom le nom de l'image originale.
+     * @param largeur la largeur demandée (doit faire partie des largeurs configurées).
+     */
+    public Optional<Path> findThumbnail(String nom, int largeur) {
+        if (!largeurs.contains(largeur)) {
+            return Optional.empty();
+        }
+        return imageStorageService.derivativePath(nom, largeur).filter(Files::isRegularFile);
+    }
+
+    public boolean supports(int largeur) {
+        return largeurs.contains(largeur);
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private void generate(String nom) {
+        try {
+            Path original = imageStorageService.resolve(nom).orElseThrow();
+            BufferedImage image = read(original, nom);
+            if (image == null) {
+                // Format non lisible par ImageIO (webp par exemple) ou image trop grande : l'original sera servi
+                return;
+            }
+            String format = nom.substring(nom.lastIndexOf('.') + 1);
+            for (int largeur : largeurs) {
+                Path cible = imageStorageService.derivativePath(nom, largeur).orElseThrow();
+                // Une image plus étroite que la miniature est servie telle quelle
+                if (image.getWidth() <= largeur || Files.exists(cible)) {
+                    continue;
+                }
+                write(resize(image, largeur, !format.equals("jpg")), format, cible);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Échec de génération des miniatures de {} : {}", nom, e.getMessage());
+        }
+    }
+
+    // Décode l'image seulement si ses dimensions annoncées restent sous le plafond de pixels
+    private BufferedImage read(Path original, String nom) throws IOException {
+        try (ImageInputStream entree = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> lecteurs = entree == null ? null : ImageIO.getImageReaders(entree);
+            if (lecteurs == null || !lecteurs.hasNext()) {
+                return null;
+            }
+            ImageReader lecteur = lecteurs.next();
+            try {
+                lecteur.setInput(entree, true, true);
+                long pixels = (long) lecteur.getWidth(0) * lecteur.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Miniatures de {} non générées : {} x {} pixels (maximum {})",
+                            nom, lecteur.getWidth(0), lecteur.getHeight(0), maxPixels);
+                    return null;
+                }
+                return lecteur.read(0);
+            } finally {
+                lecteur.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage image, int largeur, boolean transparence) {
+        int hauteur = Math.max(1, Math.round((float) image.getHeight() * largeur / image.getWidth()));
+        BufferedImage miniature = new BufferedImage(largeur, hauteur,
+                transparence ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = miniature.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, largeur, hauteur, null);
+        } finally {
+            graphics.dispose();
+        }
+        return miniature;
+    }
+
+    // Écriture dans un fichier temporaire puis déplacement atomique : une miniature servie est toujours complète
+    private static void write(BufferedImage miniature, String format, Path cible) throws IOException {
+        Path temporaire = Files.createTempFile(cible.getParent(), ".thumb-", ".tmp");
+        try {
+            if (!ImageIO.write(miniature, format, temporaire.toFile())) {
+                return;
+            }
+            Files.move(temporaire, cible, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -5,7 +5,10 @@ import fr.openclassrooms.rental.entite.Role;
 import fr.openclassrooms.rental.entite.Utilisateur;
 import fr.openclassrooms.rental.enumer.TypeDeRole;
 import fr.openclassrooms.rental.repository.UtilisateurRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -24,7 +27,7 @@ import java.util.Optional;
 
 @AllArgsConstructor
 @Service
-public class UtilisateurService implements UserDetailsService {
+public class UtilisateurService implements UserDetailsService, UserDetailsPasswordService {
 
     private UtilisateurRepository utilisateurRepository;
     private BCryptPasswordEncoder passwordEncoder;
@@ -95,6 +98,7 @@ public class UtilisateurService implements UserDetailsService {
      * @throws UsernameNotFoundException si aucun utilisateur n'est trouvé pour cet email.
      */
     @Override
+    @Timed("rental.users.load")
     public Utilisateur loadUserByUsername(String username) throws UsernameNotFoundException {
         Utilisateur utilisateur = this.utilisateurRepository
                 .findByEmail(username)
@@ -102,4 +106,22 @@ public class UtilisateurService implements UserDetailsService {
 
         return utilisateur;
     }
+
+    /**
+     * Remplace le hash d'un utilisateur par un hash au coût BCrypt courant.
+     * Appelé par Spring Security après une connexion réussie lorsque le hash stocké
+     * a été calculé avec un coût obsolète.
+     *
+     * @param user l'utilisateur authentifié.
+     * @param newPassword le nouveau hash du mot de passe.
+     * @return l'utilisateur mis à jour.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Utilisateur utilisateur = loadUserByUsername(user.getUsername());
+        utilisateur.setPassword(newPassword);
+        utilisateur.setUpdated_at(LocalDateTime.now());
+        // Même mot de passe, seul le coût change : les tokens déjà émis restent valides (pas de révocation)
+        return this.utilisateurRepository.save(utilisateur);
+    }
 }
@@ -0,0 +1,43 @@
+package fr.openclassrooms.rental.config;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Lecture des anciennes valeurs textuelles de price et surface : la conversion ne s'exécute qu'une fois
+ * et réécrit les données, chaque forme rencontrée en base est donc vérifiée ici.
+ */
+class RentalNumericColumnsMigrationTest {
+
+    // Valeur attendue vide : valeur illisible, convertie en NULL
+    @ParameterizedTest(name = "\"{0}\" -> {1}")
+    @CsvSource(delimiter = '|', value = {
+            "1 200 €      | 1200.00 | false",
+            "1.200,50     | 1200.50 | false",
+            "1,200.50     | 1200.50 | false",
+            "1.200        | 1200.00 | true",
+            "1,200        | 1200.00 | true",
+            "0.500        | 0.50    | false",
+            "0,5          | 0.50    | false",
+            "12,5         | 12.50   | false",
+            "1.234.567    | 1234567.00 | false",
+            "1 234 567,89 | 1234567.89 | false",
+            "-1.200,50    | -1200.50 | false",
+            "45 m²        | 45.00   | false",
+            "45m2         | 45.00   | false",
+            "850€         | 850.00  | false",
+            "-            |         | false",
+            "1.2.3        |         | false",
+            "1.20.300     |         | false",
+            "1.200.50,3,4 |         | false",
+            "sur demande  |         | false"
+    })
+    void parse(String valeur, BigDecimal attendu, boolean ambigu) {
+        assertEquals(attendu, RentalNumericColumnsMigration.parse(valeur));
+        assertEquals(ambigu, RentalNumericColumnsMigration.isAmbiguous(valeur));
+    }
+}
@@ -0,0 +1,105 @@
+package fr.openclassrooms.rental.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fr.openclassrooms.rental.diagnostic.QueryCountAssertions.assertMaxStatements;
+import static fr.openclassrooms.rental.diagnostic.QueryCountAssertions.assertNoRepeatedStatements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Budget de requêtes SQL des lectures de locations : le test échoue si un endpoint dépasse son budget
+ * ou charge les propriétaires un à un (N+1).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RentalControllerQueryCountTest {
+
+    private static final int LOCATIONS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeAll
+    void creerLocations() throws Exception {
+        mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Proprio\",\"email\":\"proprio@rentals.test\",\"password\":\"secret\"}"))
+                .andExpect(status().is2xxSuccessful());
+        String connexion = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"proprio@rentals.test\",\"password\":\"secret\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        token = objectMapper.readTree(connexion).get("token").asText();
+
+        for (int i = 0; i < LOCATIONS; i++) {
+            // Contenus distincts : chaque location a sa propre image
+            MockMultipartFile image = new MockMultipartFile("picture", "image.jpg", MediaType.IMAGE_JPEG_VALUE,
+                    ("image-" + i).getBytes());
+            String creation = mockMvc.perform(multipart("/rentals").file(image)
+                            .param("name", "Location " + i)
+                            .param("surface", "40")
+                            .param("price", String.valueOf(500 + i))
+                            .param("description", "Description " + i)
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            ids.add(objectMapper.readTree(creation).get("id").asInt());
+        }
+    }
+
+    @Test
+    void getRentalsTientSonBudget() throws Exception {
+        assertMaxStatements(2, () -> mockMvc.perform(get("/rentals")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rentals.length()").value(LOCATIONS)));
+    }
+
+    @Test
+    void getRentalsNeChargePasLesProprietairesUnAUn() throws Exception {
+        assertNoRepeatedStatements(1, () -> mockMvc.perform(get("/rentals")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void getRentalByIdTientSonBudget() throws Exception {
+        assertMaxStatements(2, () -> mockMvc.perform(get("/rentals/{id}", ids.get(0))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(ids.get(0))));
+    }
+
+    @Test
+    void getRentalByIdSansRequeteRepetee() throws Exception {
+        assertNoRepeatedStatements(1, () -> mockMvc.perform(get("/rentals/{id}", ids.get(1))
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+    }
+}
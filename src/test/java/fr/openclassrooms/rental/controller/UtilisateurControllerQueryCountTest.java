@@ -0,0 +1,69 @@
+package fr.openclassrooms.rental.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static fr.openclassrooms.rental.diagnostic.QueryCountAssertions.assertMaxStatements;
+import static fr.openclassrooms.rental.diagnostic.QueryCountAssertions.assertNoRepeatedStatements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Budget de requêtes SQL de GET /auth/me : le token porte l'identité, seul l'utilisateur est lu,
+ * avec son rôle dans la même requête.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UtilisateurControllerQueryCountTest {
+
+    private static final String EMAIL = "locataire@auth.test";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+
+    @BeforeAll
+    void connecter() throws Exception {
+        mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Locataire\",\"email\":\"" + EMAIL + "\",\"password\":\"secret\"}"))
+                .andExpect(status().is2xxSuccessful());
+        String connexion = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + EMAIL + "\",\"password\":\"secret\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        token = objectMapper.readTree(connexion).get("token").asText();
+    }
+
+    @Test
+    void getMeTientSonBudget() throws Exception {
+        assertMaxStatements(1, () -> mockMvc.perform(get("/auth/me")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value(EMAIL)));
+    }
+
+    @Test
+    void getMeSansRequeteRepetee() throws Exception {
+        assertNoRepeatedStatements(1, () -> mockMvc.perform(get("/auth/me")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk()));
+    }
+}
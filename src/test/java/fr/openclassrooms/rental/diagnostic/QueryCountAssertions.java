@@ -0,0 +1,69 @@
+package fr.openclassrooms.rental.diagnostic;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Budget de requêtes SQL pour les tests : l'action est exécutée dans une portée de {@link QueryCounter}
+ * et le test échoue si le nombre d'instructions dépasse le budget ou si une instruction est répétée (N+1).
+ * La requête doit s'exécuter sur le thread du test (MockMvc), avec rental.diagnostic.query-count.enabled=true.
+ * <pre>
+ * QueryCountAssertions.assertMaxStatements(2, () -&gt;
+ *         mockMvc.perform(get("/rentals/1")).andExpect(status().isOk()));
+ * </pre>
+ */
+public final class QueryCountAssertions {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private QueryCountAssertions() {
+    }
+
+    /**
+     * Exécute l'action et renvoie la portée fermée, pour des vérifications plus fines.
+     */
+    public static QueryCounter.Scope count(Action action) throws Exception {
+        try (QueryCounter.Scope scope = QueryCounter.start()) {
+            action.run();
+            return scope;
+        }
+    }
+
+    /**
+     * Échoue si l'action exécute plus de {@code budget} instructions, ou aucune : un comptage à zéro signale
+     * un inspecteur débranché (rental.diagnostic.query-count.enabled=false), qui ferait passer tous les budgets.
+     */
+    public static QueryCounter.Scope assertMaxStatements(int budget, Action action) throws Exception {
+        QueryCounter.Scope scope = count(action);
+        if (scope.getStatementCount() == 0) {
+            throw new AssertionError("Aucune requête SQL comptée : le comptage (QueryCountInspector) est-il actif ?");
+        }
+        if (scope.getStatementCount() > budget) {
+            throw new AssertionError("Budget de " + budget + " requêtes SQL dépassé : "
+                    + scope.getStatementCount() + " exécutées" + lister(scope.getStatements()));
+        }
+        return scope;
+    }
+
+    /**
+     * Échoue si une même instruction est exécutée plus de {@code maxOccurrences} fois.
+     */
+    public static QueryCounter.Scope assertNoRepeatedStatements(int maxOccurrences, Action action) throws Exception {
+        QueryCounter.Scope scope = count(action);
+        Map<String, Integer> repetees = scope.getRepeatedStatements(maxOccurrences + 1);
+        if (!repetees.isEmpty()) {
+            throw new AssertionError("Instructions répétées plus de " + maxOccurrences + " fois (N+1 probable)"
+                    + lister(repetees));
+        }
+        return scope;
+    }
+
+    private static String lister(Map<String, Integer> instructions) {
+        return instructions.entrySet().stream()
+                .map(instruction -> "\n  " + instruction.getValue() + " x " + instruction.getKey())
+                .collect(Collectors.joining());
+    }
+}